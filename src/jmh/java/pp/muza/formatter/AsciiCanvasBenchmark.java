@@ -0,0 +1,168 @@
+package pp.muza.formatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link AsciiCanvas} entry points.
+ * Run with {@code ./gradlew jmh}; the GC profiler reports the allocation rate.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AsciiCanvasBenchmark {
+
+    /**
+     * Canvas size as {@code width x height}, from a terminal to a large dashboard.
+     */
+    @Param({ "80x24", "200x5000" })
+    public String size;
+
+    /**
+     * Length of the drawn text.
+     */
+    @Param({ "16", "1024" })
+    public int length;
+
+    private AsciiCanvas canvas;
+    private DoubleBufferedCanvas buffered;
+    private String text;
+    private List<String> lines;
+    private final StringBuilder out = new StringBuilder();
+    private ByteBuffer bytes;
+    private AsciiCanvas[] regions;
+
+    @Setup
+    public void setup() {
+        int x = size.indexOf('x');
+        int width = Integer.parseInt(size.substring(0, x));
+        int height = Integer.parseInt(size.substring(x + 1));
+        canvas = new AsciiCanvas(width, height);
+        text = BenchmarkTexts.text(length, Integer.MAX_VALUE);
+        lines = LineFormatter.textWrap(BenchmarkTexts.text(width * height, width), width, ' ');
+        canvas.pasteLines(0, 0, lines);
+        buffered = new DoubleBufferedCanvas(width, height);
+        bytes = ByteBuffer.allocateDirect((width + Meta.LINES_SEPARATOR.length()) * height);
+        regions = new AsciiCanvas[] { canvas.region(0, 0, width / 2, height / 2),
+                canvas.region(width / 2, 0, width - width / 2, height / 2),
+                canvas.region(0, height / 2, width / 2, height - height / 2),
+                canvas.region(width / 2, height / 2, width - width / 2, height - height / 2) };
+    }
+
+    @Benchmark
+    public AsciiCanvas drawText() {
+        canvas.drawText(1, 1, text);
+        return canvas;
+    }
+
+    @Benchmark
+    public AsciiCanvas pasteLines() {
+        canvas.pasteLines(0, 0, lines);
+        return canvas;
+    }
+
+    @Benchmark
+    public AsciiCanvas clear() {
+        canvas.clear('.');
+        return canvas;
+    }
+
+    @Benchmark
+    public StringBuilder redrawChanges() {
+        canvas.drawText(1, 1, text);
+        out.setLength(0);
+        return canvas.takeChangesAnsi(out);
+    }
+
+    @Benchmark
+    public String canvasToString() {
+        return canvas.toString();
+    }
+
+    @Benchmark
+    public List<String> getLines() {
+        return canvas.getLines();
+    }
+
+    @Benchmark
+    public DoubleBufferedCanvas drawFrameAndSwap() {
+        AsciiCanvas back = buffered.getBack();
+        back.pasteLines(0, 0, lines);
+        buffered.swap();
+        return buffered;
+    }
+
+    @Benchmark
+    public StringBuilder appendFront() {
+        out.setLength(0);
+        return buffered.appendTo(out);
+    }
+
+    @Benchmark
+    public AsciiCanvas writeToWriter() throws IOException {
+        canvas.writeTo(Writer.nullWriter());
+        return canvas;
+    }
+
+    @Benchmark
+    public AsciiCanvas writeToStream() throws IOException {
+        canvas.writeTo(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+        return canvas;
+    }
+
+    @Benchmark
+    public ByteBuffer writeToBuffer() {
+        bytes.clear();
+        return canvas.writeTo(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public AsciiCanvas drawBox() {
+        canvas.fillRect(1, 1, canvas.getWidth() - 2, canvas.getHeight() - 2, ' ');
+        canvas.drawBox(1, 1, canvas.getWidth() - 2, canvas.getHeight() - 2, LineFormatter.Border.ALL);
+        return canvas;
+    }
+
+    @Benchmark
+    public AsciiCanvas pasteBox() {
+        canvas.pasteLines(1, 1, LineFormatter.textRectangle(canvas.getWidth() - 2, canvas.getHeight() - 2, "",
+                LineFormatter.Border.ALL, ' '));
+        return canvas;
+    }
+
+    @Benchmark
+    public AsciiCanvas blit() {
+        canvas.blit(canvas, 0, 0, canvas.getWidth() / 2, canvas.getHeight(), canvas.getWidth() / 2, 0);
+        return canvas;
+    }
+
+    @Benchmark
+    public AsciiCanvas pasteRegions() {
+        for (AsciiCanvas region : regions) {
+            region.pasteLines(0, 0, lines);
+        }
+        return canvas;
+    }
+}
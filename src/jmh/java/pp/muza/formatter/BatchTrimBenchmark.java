@@ -0,0 +1,92 @@
+package pp.muza.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formatting a column of cells with the batch trims, compared with trimming the
+ * cells one call at a time.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BatchTrimBenchmark {
+
+    /**
+     * Number of cells of the column.
+     */
+    @Param({ "100", "100000" })
+    public int cells;
+
+    /**
+     * Width of a cell.
+     */
+    @Param({ "12" })
+    public int width;
+
+    private List<String> column;
+    private char[] out;
+    private final StringBuilder sb = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        column = new ArrayList<>(cells);
+        for (int i = 0; i < cells; i++) {
+            column.add(BenchmarkTexts.text(1 + i % (width * 2), Integer.MAX_VALUE));
+        }
+        out = new char[cells * width];
+    }
+
+    @Benchmark
+    public List<String> perCall() {
+        List<String> result = new ArrayList<>(cells);
+        for (String cell : column) {
+            result.add(LineFormatter.rightAlignTrim(cell, width, ' '));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public StringBuilder perCallIntoBuilder() {
+        sb.setLength(0);
+        for (String cell : column) {
+            LineFormatter.rightAlignTrim(cell, width, ' ', sb);
+        }
+        return sb;
+    }
+
+    @Benchmark
+    public char[] batch() {
+        return LineFormatter.rightAlignTrimAll(column, width, ' ');
+    }
+
+    @Benchmark
+    public char[] batchIntoArray() {
+        LineFormatter.rightAlignTrimAll(column, width, ' ', out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public char[] batchCenter() {
+        LineFormatter.centerTrimAll(column, width, ' ', out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,46 @@
+package pp.muza.formatter;
+
+import java.util.Random;
+
+/**
+ * Deterministic input generator shared by the benchmarks.
+ *
+ * @author 47niemand
+ */
+final class BenchmarkTexts {
+
+    private static final String[] WORDS = {
+            "a", "of", "the", "box", "line", "label", "status", "formatter", "rectangle", "International",
+    };
+
+    private BenchmarkTexts() {
+    }
+
+    /**
+     * Returns a text of the given length made of words separated by spaces, with a
+     * line separator roughly every {@code paragraph} characters.
+     *
+     * @param length    the length of the text
+     * @param paragraph the average paragraph length
+     * @return the text
+     */
+    static String text(int length, int paragraph) {
+        Random random = new Random(length);
+        StringBuilder sb = new StringBuilder(length + 16);
+        int sinceBreak = 0;
+        while (sb.length() < length) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(word);
+            sinceBreak += word.length();
+            if (sinceBreak >= paragraph) {
+                sb.append('\n');
+                sinceBreak = 0;
+            } else {
+                sb.append(' ');
+                sinceBreak++;
+            }
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package pp.muza.formatter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contention of threads drawing on one canvas: the striped
+ * {@link ConcurrentAsciiCanvas} against an {@link AsciiCanvas} guarded by a
+ * single monitor. Four threads draw on their own rows or on one shared row, or
+ * three threads draw while one reads the whole canvas.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConcurrentCanvasBenchmark {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 50;
+
+    /**
+     * How the canvas is guarded.
+     */
+    @Param({ "striped", "synchronized" })
+    public String locking;
+
+    private AsciiCanvas canvas;
+    private boolean monitor;
+    private final String text = BenchmarkTexts.text(WIDTH, Integer.MAX_VALUE).substring(0, WIDTH);
+    private final AtomicInteger rows = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        monitor = locking.equals("synchronized");
+        canvas = monitor ? new AsciiCanvas(WIDTH, HEIGHT) : new ConcurrentAsciiCanvas(WIDTH, HEIGHT);
+    }
+
+    /**
+     * The row of a drawing thread.
+     */
+    @State(Scope.Thread)
+    public static class Row {
+        int top;
+
+        @Setup
+        public void setup(ConcurrentCanvasBenchmark benchmark) {
+            top = benchmark.rows.getAndIncrement() % HEIGHT;
+        }
+    }
+
+    private void draw(int top) {
+        if (monitor) {
+            synchronized (canvas) {
+                canvas.drawText(0, top, text);
+            }
+        } else {
+            canvas.drawText(0, top, text);
+        }
+    }
+
+    private List<String> read() {
+        if (monitor) {
+            synchronized (canvas) {
+                return canvas.getLines();
+            }
+        }
+        return canvas.getLines();
+    }
+
+    @Benchmark
+    @Group("disjointRows")
+    @GroupThreads(4)
+    public void drawOwnRow(Row row) {
+        draw(row.top);
+    }
+
+    @Benchmark
+    @Group("sharedRow")
+    @GroupThreads(4)
+    public void drawSharedRow() {
+        draw(0);
+    }
+
+    @Benchmark
+    @Group("drawAndRead")
+    @GroupThreads(3)
+    public void drawWhileReading(Row row) {
+        draw(row.top);
+    }
+
+    @Benchmark
+    @Group("drawAndRead")
+    @GroupThreads(1)
+    public List<String> readWhileDrawing() {
+        return read();
+    }
+}
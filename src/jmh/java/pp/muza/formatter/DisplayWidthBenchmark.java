@@ -0,0 +1,80 @@
+package pp.muza.formatter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link DisplayWidth} on pure ASCII texts, which take the fast
+ * path, and on mixed CJK texts, which are looked up code point by code point,
+ * next to the char counting formatting they replace.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DisplayWidthBenchmark {
+
+    /**
+     * Length of the measured text.
+     */
+    @Param({ "16", "1024" })
+    public int length;
+
+    /**
+     * Content of the text.
+     */
+    @Param({ "ascii", "cjk" })
+    public String content;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        String ascii = BenchmarkTexts.text(length, Integer.MAX_VALUE);
+        if (content.equals("ascii")) {
+            text = ascii;
+        } else {
+            // every fourth character is a CJK ideograph
+            StringBuilder sb = new StringBuilder(ascii);
+            for (int i = 0; i < sb.length(); i += 4) {
+                sb.setCharAt(i, (char) (0x4E00 + i % 0x5000));
+            }
+            text = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public int of() {
+        return DisplayWidth.of(text);
+    }
+
+    @Benchmark
+    public int length() {
+        return text.length();
+    }
+
+    @Benchmark
+    public String centerTrimChars() {
+        return LineFormatter.centerTrim(text, length * 2, ' ');
+    }
+
+    @Benchmark
+    public String centerTrimDisplay() {
+        return LineFormatter.centerTrim(text, length * 2, ' ', LineFormatter.Measure.DISPLAY);
+    }
+}
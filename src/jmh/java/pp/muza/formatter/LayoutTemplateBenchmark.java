@@ -0,0 +1,76 @@
+package pp.muza.formatter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of a layout of boxes with a compiled {@link LayoutTemplate}, compared
+ * with building it with {@link LineFormatter#textRectangle} and
+ * {@link LineFormatter#joinHorizontal} for every rendering.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LayoutTemplateBenchmark {
+
+    /**
+     * Width of a box of the layout.
+     */
+    @Param({ "20", "80" })
+    public int width;
+
+    private static final int BOXES = 3;
+    private static final int HEIGHT = 6;
+
+    private LayoutTemplate template;
+    private String[] values;
+    private char[] out;
+    private final StringBuilder sb = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        LayoutTemplate.Builder builder = LayoutTemplate.builder(width * BOXES, HEIGHT, ' ');
+        values = new String[BOXES];
+        for (int i = 0; i < BOXES; i++) {
+            builder.box(i * width, 0, width, HEIGHT, LineFormatter.Border.ALL, LineFormatter.Align.CENTER_MIDDLE);
+            values[i] = BenchmarkTexts.text(width * 2, Integer.MAX_VALUE);
+        }
+        template = builder.build();
+        out = new char[template.getLength()];
+    }
+
+    @Benchmark
+    public char[] template() {
+        template.render(out, 0, values);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder byHand() {
+        List<String> lines = LineFormatter.textRectangle(width, HEIGHT, values[0], LineFormatter.Border.ALL, ' ');
+        for (int i = 1; i < BOXES; i++) {
+            lines = LineFormatter.joinHorizontal(lines,
+                    LineFormatter.textRectangle(width, HEIGHT, values[i], LineFormatter.Border.ALL, ' '));
+        }
+        sb.setLength(0);
+        lines.forEach(line -> sb.append(line).append(Meta.LINES_SEPARATOR));
+        return sb;
+    }
+}
@@ -0,0 +1,176 @@
+package pp.muza.formatter;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link LineFormatter} entry points.
+ * Run with {@code ./gradlew jmh}; the GC profiler reports the allocation rate.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LineFormatterBenchmark {
+
+    /**
+     * Length of the input text, from a tiny label up to a multi-megabyte document.
+     */
+    @Param({ "16", "1024", "65536", "4194304" })
+    public int length;
+
+    /**
+     * Width of the wrapped lines and of the boxes.
+     */
+    @Param({ "80" })
+    public int width;
+
+    private String text;
+    private String line;
+    private List<String> lines;
+    private List<String> otherLines;
+    private List<String> fittingLines;
+    private final StringBuilder out = new StringBuilder();
+    private final CachingLineFormatter cache = new CachingLineFormatter(1024);
+
+    @Setup
+    public void setup() {
+        text = BenchmarkTexts.text(length, 400);
+        line = BenchmarkTexts.text(Math.min(length, width / 2), Integer.MAX_VALUE);
+        lines = LineFormatter.textWrap(text, width, ' ');
+        otherLines = LineFormatter.textWrap(BenchmarkTexts.text(length, 200), width / 2, ' ');
+        fittingLines = lines.stream().map(l -> LineFormatter.rightAlignTrim(l, width, ' '))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> textWrap() {
+        return LineFormatter.textWrap(text, width, ' ');
+    }
+
+    @Benchmark
+    public List<String> textWrapGreedySplit() {
+        return LineFormatter.textWrap(text, width, ' ', LineFormatter.Wrap.GREEDY, LineFormatter.Overflow.SPLIT);
+    }
+
+    @Benchmark
+    public List<String> textWrapOptimal() {
+        return LineFormatter.textWrap(text, width, ' ', LineFormatter.Wrap.OPTIMAL, LineFormatter.Overflow.KEEP);
+    }
+
+    @Benchmark
+    public List<String> textWrapOptimalHyphenate() {
+        return LineFormatter.textWrap(text, width, ' ', LineFormatter.Wrap.OPTIMAL, LineFormatter.Overflow.HYPHENATE);
+    }
+
+    @Benchmark
+    public long textWrapStream() {
+        return LineFormatter.textWrapStream(new StringReader(text), width, ' ').count();
+    }
+
+    @Benchmark
+    public String centerTrim() {
+        return LineFormatter.centerTrim(line, width, ' ');
+    }
+
+    @Benchmark
+    public String rightAlignTrim() {
+        return LineFormatter.rightAlignTrim(line, width, ' ');
+    }
+
+    @Benchmark
+    public String leftAlignTrim() {
+        return LineFormatter.leftAlignTrim(line, width, ' ');
+    }
+
+    @Benchmark
+    public String horizontalLine() {
+        return LineFormatter.horizontalLine(width, LineFormatter.Border.ALL);
+    }
+
+    @Benchmark
+    public List<String> textRectangle() {
+        return LineFormatter.textRectangle(width, lines.size() + 2, text, LineFormatter.Border.ALL, ' ');
+    }
+
+    @Benchmark
+    public List<String> textRectangleJustify() {
+        return LineFormatter.textRectangle(width, lines.size() + 2, text, LineFormatter.Border.ALL, ' ',
+                LineFormatter.Align.JUSTIFY_MIDDLE);
+    }
+
+    @Benchmark
+    public StringBuilder textRectangleIntoBuilder() {
+        out.setLength(0);
+        return LineFormatter.textRectangle(width, lines.size() + 2, text, LineFormatter.Border.ALL, ' ', out);
+    }
+
+    @Benchmark
+    public List<String> cachedTextRectangle() {
+        return cache.textRectangle(width, 5, line, LineFormatter.Border.ALL, ' ');
+    }
+
+    @Benchmark
+    public List<String> textRectanglePrewrapped() {
+        return LineFormatter.textRectangle(width, lines.size() + 2, fittingLines, LineFormatter.Border.HORIZONTAL,
+                ' ', LineFormatter.Align.LEFT_TOP);
+    }
+
+    @Benchmark
+    public List<String> resizeFitting() {
+        return LineFormatter.resize(fittingLines, width, fittingLines.size(), LineFormatter.Align.CENTER_MIDDLE,
+                ' ');
+    }
+
+    @Benchmark
+    public List<String> resize() {
+        return LineFormatter.resize(lines, width + 10, lines.size() + 10, LineFormatter.Align.LEFT_TOP, ' ');
+    }
+
+    @Benchmark
+    public List<String> joinHorizontal() {
+        return LineFormatter.joinHorizontal(lines, otherLines);
+    }
+
+    @Benchmark
+    public List<String> joinHorizontalColumns() {
+        List<String> result = lines;
+        for (int i = 0; i < 50; i++) {
+            result = LineFormatter.joinHorizontal(result, otherLines);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<String> joinHorizontalColumnBlocks() {
+        Block result = Block.of(lines);
+        Block column = Block.of(otherLines);
+        for (int i = 0; i < 50; i++) {
+            result = LineFormatter.joinHorizontal(result, column);
+        }
+        return result.toLines();
+    }
+
+    @Benchmark
+    public List<String> joinVertical() {
+        return LineFormatter.joinVertical(lines, otherLines);
+    }
+}
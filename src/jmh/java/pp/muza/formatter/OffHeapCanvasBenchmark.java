@@ -0,0 +1,87 @@
+package pp.muza.formatter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Drawing on and writing out a large {@link OffHeapAsciiCanvas}, next to the
+ * same on an {@link AsciiCanvas} written out through {@code toString()}.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OffHeapCanvasBenchmark {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 4000;
+
+    private OffHeapAsciiCanvas offHeap;
+    private AsciiCanvas heap;
+    private List<String> lines;
+    private final WritableByteChannel discard = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup
+    public void setup() {
+        offHeap = OffHeapAsciiCanvas.allocate(WIDTH, HEIGHT);
+        heap = new AsciiCanvas(WIDTH, HEIGHT);
+        lines = LineFormatter.textWrap(BenchmarkTexts.text(WIDTH * HEIGHT / 4, WIDTH), WIDTH, ' ');
+    }
+
+    @Benchmark
+    public OffHeapAsciiCanvas offHeapPasteLines() {
+        offHeap.pasteLines(0, 0, lines);
+        return offHeap;
+    }
+
+    @Benchmark
+    public AsciiCanvas heapPasteLines() {
+        heap.pasteLines(0, 0, lines);
+        return heap;
+    }
+
+    @Benchmark
+    public OffHeapAsciiCanvas offHeapWriteTo() throws IOException {
+        offHeap.writeTo(discard);
+        return offHeap;
+    }
+
+    @Benchmark
+    public int heapToString() {
+        return heap.toString().length();
+    }
+}
@@ -0,0 +1,69 @@
+package pp.muza.formatter;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of {@link LineFormatter#textWrapParallel} with the number of worker
+ * threads, compared with the sequential {@link LineFormatter#textWrap}.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParallelWrapBenchmark {
+
+    /**
+     * Length of the input text.
+     */
+    @Param({ "4194304", "33554432" })
+    public int length;
+
+    /**
+     * Number of threads of the fork/join pool.
+     */
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int threads;
+
+    private String text;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        text = BenchmarkTexts.text(length, 400);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<String> textWrap() {
+        return LineFormatter.textWrap(text, 80, ' ');
+    }
+
+    @Benchmark
+    public List<String> textWrapParallel() {
+        return LineFormatter.textWrapParallel(text, 80, ' ', pool);
+    }
+}
@@ -0,0 +1,87 @@
+package pp.muza.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering of a table with {@link Table}, compared with building it by hand out
+ * of {@link LineFormatter#textRectangle} and {@link LineFormatter#joinHorizontal}.
+ *
+ * @author 47niemand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TableBenchmark {
+
+    /**
+     * Number of rows of the table.
+     */
+    @Param({ "100", "100000" })
+    public int rows;
+
+    private static final int COLUMNS = 4;
+    private static final int WIDTH = 12;
+
+    private List<List<String>> cells;
+    private final StringBuilder out = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        cells = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            List<String> row = new ArrayList<>(COLUMNS);
+            for (int j = 0; j < COLUMNS; j++) {
+                row.add(BenchmarkTexts.text(5 + (i * 7 + j * 13) % 30, Integer.MAX_VALUE));
+            }
+            cells.add(row);
+        }
+    }
+
+    @Benchmark
+    public StringBuilder table() {
+        Table table = new Table(LineFormatter.Border.VERTICAL, ' ').setMaxColumnWidth(WIDTH);
+        cells.forEach(table::addRow);
+        out.setLength(0);
+        return table.render(out);
+    }
+
+    @Benchmark
+    public StringBuilder tableFixedWidths() {
+        Table table = new Table(LineFormatter.Border.VERTICAL, ' ').setColumnWidths(WIDTH, WIDTH, WIDTH, WIDTH);
+        out.setLength(0);
+        return table.render(cells.iterator(), out);
+    }
+
+    @Benchmark
+    public StringBuilder byHand() {
+        out.setLength(0);
+        for (List<String> row : cells) {
+            List<String> line = LineFormatter.textRectangle(WIDTH + 1, 3, row.get(0), LineFormatter.Border.LEFT, ' ');
+            for (int j = 1; j < COLUMNS; j++) {
+                line = LineFormatter.joinHorizontal(line,
+                        LineFormatter.textRectangle(WIDTH + 1, 3, row.get(j), LineFormatter.Border.LEFT, ' '));
+            }
+            for (String s : line) {
+                out.append(s).append('|').append(Meta.LINES_SEPARATOR);
+            }
+        }
+        return out;
+    }
+}
@@ -1,37 +1,154 @@
 package pp.muza.formatter;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
 
 /**
  * AsciiCanvas is a class that can be used to draw ascii art.
+ * <p>
+ * A {@link #region(int, int, int, int) region} of a canvas is a canvas sharing
+ * the storage of the canvas: drawing on the region draws on the canvas, with the
+ * coordinates translated and clipped to the region.
  *
  * @author 47niemand
  */
 public class AsciiCanvas {
 
+    // fills the second cell of a character two columns wide; the cells are told
+    // by the tails of the storage, so the character may also be drawn
+    static final char WIDE_TAIL = '\0';
+    private static final char[] SEPARATOR = Meta.LINES_SEPARATOR.toCharArray();
+    private static final int ENCODE_BUFFER_SIZE = 8192;
+    // the halves of wide characters cut at the left and right of drawn cells
+    private static final int CUT_LEFT = 1;
+    private static final int CUT_RIGHT = 2;
+    // the encoder and buffer reused by the writes of a thread
+    private static final ThreadLocal<Encoding> ENCODING = new ThreadLocal<>();
+
     private final int width;
     private final int height;
-    private final char[][] canvas;
+    // the rows are stored one after another in a single array, shared with the
+    // regions; the first cell of the canvas and the distance between its rows
+    private final char[] canvas;
+    private final int offset;
+    private final int stride;
+    // rows of the storage touched since the last time the changes were taken,
+    // and the row and column of the storage the canvas starts at
+    private final boolean[] dirty;
+    private final int firstRow;
+    private final int firstColumn;
+    // whether the canvas is a region of another canvas
+    private final boolean isRegion;
+    private final Storage storage;
+    // the content of the canvas the last time the changes were taken
+    private char[] snapshot;
+    // the styles of the cells the last time the changes were taken
+    private int[] styleSnapshot;
+    // the second halves of wide characters the last time the changes were taken
+    private boolean[] tailSnapshot;
 
     public AsciiCanvas(int width, int height) {
         this.width = width;
         this.height = height;
-        canvas = new char[height][width];
+        canvas = new char[Math.multiplyExact(width, height)];
+        offset = 0;
+        stride = width;
+        dirty = new boolean[height];
+        firstRow = 0;
+        firstColumn = 0;
+        isRegion = false;
+        storage = new Storage();
         clear();
     }
 
+    // a region of the parent, whose bounds are checked
+    AsciiCanvas(AsciiCanvas parent, int left, int top, int width, int height) {
+        this.width = width;
+        this.height = height;
+        canvas = parent.canvas;
+        offset = parent.start(top) + left;
+        stride = parent.stride;
+        dirty = parent.dirty;
+        firstRow = parent.firstRow + top;
+        firstColumn = parent.firstColumn + left;
+        isRegion = true;
+        storage = parent.storage;
+    }
+
+    /**
+     * Returns a region of the canvas, which shares the storage of the canvas.
+     * Drawing on the region draws on the canvas, and what is drawn on the canvas
+     * shows in the region. The coordinates of the region start at its top left
+     * corner, and drawing is clipped to the region. A wide character cut by an
+     * edge of the region is blanked on both sides of the edge.
+     * <p>
+     * Disjoint regions of a canvas may be drawn on by different threads in
+     * parallel, as long as no wide character or surrogate pair crosses an edge of
+     * the regions: drawing over its half inside a region blanks the half outside,
+     * in the neighbouring region. The canvas may be read once the threads
+     * finished drawing.
+     *
+     * @param left   the left position of the region.
+     * @param top    the top position of the region.
+     * @param width  the width of the region.
+     * @param height the height of the region.
+     * @return the region.
+     * @throws IndexOutOfBoundsException if the region is not inside the canvas.
+     */
+    public AsciiCanvas region(int left, int top, int width, int height) {
+        if (left < 0 || top < 0 || width < 0 || height < 0 || width > this.width - left
+                || height > this.height - top) {
+            throw new IndexOutOfBoundsException("region is out of bounds");
+        }
+        return newRegion(left, top, width, height);
+    }
+
+    /**
+     * Creates a region of the canvas, once its bounds are checked.
+     */
+    AsciiCanvas newRegion(int left, int top, int width, int height) {
+        return new AsciiCanvas(this, left, top, width, height);
+    }
+
+    // the index of the first cell of the row in the storage
+    private int start(int top) {
+        return offset + top * stride;
+    }
+
     /**
      * Clears the canvas.
      *
      * @param c the character to fill the canvas with.
      **/
     public void clear(char c) {
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                canvas[i][j] = c;
+        if (stride == width) {
+            Arrays.fill(canvas, offset, offset + width * height, c);
+            unstyle(offset, offset + width * height);
+            untail(offset, offset + width * height);
+        } else {
+            for (int i = 0; i < height; i++) {
+                clipWide(i, 0, width);
+                Arrays.fill(canvas, start(i), start(i) + width, c);
+                unstyle(start(i), start(i) + width);
+                untail(start(i), start(i) + width);
             }
         }
+        Arrays.fill(dirty, firstRow, firstRow + height, true);
     }
 
     /**
@@ -52,14 +169,133 @@ public class AsciiCanvas {
         if (top < 0 || top >= height || left < 0 || left >= width || text == null || text.isEmpty()) {
             return;
         }
-        int i = 0;
-        for (char c : text.toCharArray()) {
-            if (left + i >= width) {
-                break;
+        int length = Math.min(text.length(), width - left);
+        clipWide(top, left, left + length);
+        int at = start(top) + left;
+        text.getChars(0, length, canvas, at);
+        clipPair(at, length, text.length());
+        unstyle(at, at + length);
+        untail(at, at + length);
+        dirty[firstRow + top] = true;
+    }
+
+    /**
+     * Draws a styled text at the specified position.
+     *
+     * @param left the left position of the text.
+     * @param top  the top position of the text.
+     * @param text the text to draw.
+     */
+    public void drawStyledText(int left, int top, StyledText text) {
+        if (top < 0 || top >= height || left < 0 || left >= width || text == null || text.length() == 0) {
+            return;
+        }
+        int length = Math.min(text.length(), width - left);
+        clipWide(top, left, left + length);
+        int at = start(top) + left;
+        text.toString().getChars(0, length, canvas, at);
+        clipPair(at, length, text.length());
+        text.getStyles(0, length, styles(), at);
+        untail(at, at + length);
+        dirty[firstRow + top] = true;
+    }
+
+    /**
+     * Draws a text at the specified position. A {@link StyledText} is drawn with
+     * its styles.
+     *
+     * @param left the left position of the text.
+     * @param top  the top position of the text.
+     * @param text the text to draw.
+     */
+    public void drawText(int left, int top, CharSequence text) {
+        if (text instanceof String) {
+            drawText(left, top, (String) text);
+            return;
+        }
+        if (text instanceof StyledText) {
+            drawStyledText(left, top, (StyledText) text);
+            return;
+        }
+        if (top < 0 || top >= height || left < 0 || left >= width || text == null || text.length() == 0) {
+            return;
+        }
+        int length = Math.min(text.length(), width - left);
+        clipWide(top, left, left + length);
+        int at = start(top) + left;
+        for (int i = 0; i < length; i++) {
+            canvas[at + i] = text.charAt(i);
+        }
+        clipPair(at, length, text.length());
+        unstyle(at, at + length);
+        untail(at, at + length);
+        dirty[firstRow + top] = true;
+    }
+
+    /**
+     * Draws a text at the specified position, measured as specified. With
+     * {@link LineFormatter.Measure#DISPLAY} a character two columns wide occupies
+     * two cells of the canvas, zero-width characters are not drawn, and a
+     * character that does not fit at the right edge is not drawn. A character
+     * outside the Basic Multilingual Plane two columns wide fills its cells with
+     * its surrogate pair, and one a column wide is drawn as {@code U+FFFD}, since
+     * a cell holds a single {@code char}.
+     *
+     * @param left    the left position of the text.
+     * @param top     the top position of the text.
+     * @param text    the text to draw.
+     * @param measure how to measure the width of the text.
+     */
+    public void drawText(int left, int top, String text, LineFormatter.Measure measure) {
+        if (measure == LineFormatter.Measure.CHARS) {
+            drawText(left, top, text);
+            return;
+        }
+        if (top < 0 || top >= height || left < 0 || left >= width || text == null || text.isEmpty()) {
+            return;
+        }
+        int rowStart = start(top);
+        int x = left;
+        clipWide(top, left, left);
+        boolean[] tails = storage.tails;
+        for (int i = 0; i < text.length() && x < width;) {
+            int codePoint = text.codePointAt(i);
+            int cells = DisplayWidth.of(codePoint);
+            if (cells == 2) {
+                if (x + 1 == width) {
+                    break;
+                }
+                if (tails == null) {
+                    tails = tails();
+                }
+                if (Character.isBmpCodePoint(codePoint)) {
+                    canvas[rowStart + x] = (char) codePoint;
+                    canvas[rowStart + x + 1] = WIDE_TAIL;
+                    tails[rowStart + x + 1] = true;
+                } else {
+                    // the surrogate pair fills both cells
+                    canvas[rowStart + x] = Character.highSurrogate(codePoint);
+                    canvas[rowStart + x + 1] = Character.lowSurrogate(codePoint);
+                    tails[rowStart + x + 1] = false;
+                }
+                tails[rowStart + x] = false;
+            } else if (cells == 1) {
+                canvas[rowStart + x] = Character.isBmpCodePoint(codePoint) ? (char) codePoint : '\uFFFD';
+                if (tails != null) {
+                    tails[rowStart + x] = false;
+                }
             }
-            canvas[top][left + i] = c;
-            i++;
+            x += cells;
+            i += Character.charCount(codePoint);
+        }
+        // the cell after the text may hold the second half of a character drawn over
+        if (firstColumn + x < stride && (tails != null && tails[rowStart + x]
+                || x > left && Character.isLowSurrogate(canvas[rowStart + x]))) {
+            canvas[rowStart + x] = ' ';
+            untail(rowStart + x, rowStart + x + 1);
         }
+        unstyle(rowStart + left, rowStart + x);
+        dirty[firstRow + top] = true;
     }
 
     /**
@@ -78,26 +314,504 @@ public class AsciiCanvas {
         }
     }
 
+    /**
+     * Fills a rectangle with the character. The parts of the rectangle outside of
+     * the canvas are not drawn.
+     *
+     * @param left   the left position of the rectangle.
+     * @param top    the top position of the rectangle.
+     * @param width  the width of the rectangle.
+     * @param height the height of the rectangle.
+     * @param c      the character to fill the rectangle with.
+     */
+    public void fillRect(int left, int top, int width, int height, char c) {
+        fill(left, top, (long) left + width, (long) top + height, c);
+    }
+
+    /**
+     * Draws a horizontal line of the character.
+     *
+     * @param left   the left position of the line.
+     * @param top    the top position of the line.
+     * @param length the length of the line.
+     * @param c      the character to draw the line with.
+     */
+    public void drawHLine(int left, int top, int length, char c) {
+        fillRect(left, top, length, 1, c);
+    }
+
+    /**
+     * Draws a vertical line of the character.
+     *
+     * @param left   the left position of the line.
+     * @param top    the top position of the line.
+     * @param length the length of the line.
+     * @param c      the character to draw the line with.
+     */
+    public void drawVLine(int left, int top, int length, char c) {
+        fillRect(left, top, 1, length, c);
+    }
+
+    /**
+     * Draws the border of a box, as {@link LineFormatter#textRectangle(int, int,
+     * String, LineFormatter.Border, char)} does. The inside of the box is left as
+     * it is.
+     *
+     * @param left   the left position of the box.
+     * @param top    the top position of the box.
+     * @param width  the width of the box.
+     * @param height the height of the box.
+     * @param border the border of the box.
+     */
+    public void drawBox(int left, int top, int width, int height, LineFormatter.Border border) {
+        if (width < 1 || height < 1) {
+            return;
+        }
+        long right = (long) left + width;
+        long bottom = (long) top + height;
+        boolean leftSide = border.left;
+        boolean rightSide = border.right && width > 1;
+        long inner = left + (leftSide ? 1 : 0);
+        long innerRight = right - (rightSide ? 1 : 0);
+        if (border.top) {
+            horizontalLine(left, top, inner, innerRight, leftSide, rightSide);
+        }
+        if (border.bottom) {
+            horizontalLine(left, bottom - 1, inner, innerRight, leftSide, rightSide);
+        }
+        long sideTop = top + (border.top ? 1 : 0);
+        long sideBottom = bottom - (border.bottom ? 1 : 0);
+        if (leftSide) {
+            fill(left, sideTop, left + 1L, sideBottom, '|');
+        }
+        if (rightSide) {
+            fill(right - 1, sideTop, right, sideBottom, '|');
+        }
+    }
+
+    private void horizontalLine(long left, long top, long inner, long innerRight, boolean leftCorner,
+            boolean rightCorner) {
+        if (leftCorner) {
+            fill(left, top, left + 1, top + 1, '+');
+        }
+        fill(inner, top, innerRight, top + 1, '-');
+        if (rightCorner) {
+            fill(innerRight, top, innerRight + 1, top + 1, '+');
+        }
+    }
+
+    // fills the cells from left to right and from top to bottom, exclusive,
+    // clipped to the canvas
+    private void fill(long left, long top, long right, long bottom, char c) {
+        int x0 = (int) Math.max(left, 0);
+        int x1 = (int) Math.min(right, width);
+        int y0 = (int) Math.max(top, 0);
+        int y1 = (int) Math.min(bottom, height);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        for (int y = y0; y < y1; y++) {
+            clipWide(y, x0, x1);
+            int rowStart = start(y);
+            Arrays.fill(canvas, rowStart + x0, rowStart + x1, c);
+            unstyle(rowStart + x0, rowStart + x1);
+            untail(rowStart + x0, rowStart + x1);
+            dirty[firstRow + y] = true;
+        }
+    }
+
+    /**
+     * Copies the source canvas, with its styles, to the specified position.
+     *
+     * @param source the canvas to copy.
+     * @param left   the left position to copy the canvas to.
+     * @param top    the top position to copy the canvas to.
+     * @see #blit(AsciiCanvas, int, int, int, int, int, int)
+     */
+    public void blit(AsciiCanvas source, int left, int top) {
+        blit(source, 0, 0, source.width, source.height, left, top);
+    }
+
+    /**
+     * Copies a rectangle of the source canvas, with its styles, to the specified
+     * position. The parts of the rectangle outside of either canvas are not
+     * copied. The source may be this canvas, and the rectangles may overlap.
+     * The halves of wide characters and surrogate pairs cut at the edges of the
+     * rectangle are blanked.
+     *
+     * @param source       the canvas to copy from.
+     * @param sourceLeft   the left position of the rectangle in the source.
+     * @param sourceTop    the top position of the rectangle in the source.
+     * @param sourceWidth  the width of the rectangle.
+     * @param sourceHeight the height of the rectangle.
+     * @param left         the left position to copy the rectangle to.
+     * @param top          the top position to copy the rectangle to.
+     */
+    public void blit(AsciiCanvas source, int sourceLeft, int sourceTop, int sourceWidth, int sourceHeight,
+            int left, int top) {
+        // clip the rectangle to the source, then to this canvas
+        long sx = sourceLeft;
+        long sy = sourceTop;
+        long x = left;
+        long y = top;
+        long w = sourceWidth;
+        long h = sourceHeight;
+        if (sx < 0) {
+            x -= sx;
+            w += sx;
+            sx = 0;
+        }
+        if (sy < 0) {
+            y -= sy;
+            h += sy;
+            sy = 0;
+        }
+        if (x < 0) {
+            sx -= x;
+            w += x;
+            x = 0;
+        }
+        if (y < 0) {
+            sy -= y;
+            h += y;
+            y = 0;
+        }
+        w = Math.min(w, Math.min(source.width - sx, width - x));
+        h = Math.min(h, Math.min(source.height - sy, height - y));
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        // copy the rows bottom up when they move down within the storage
+        boolean up = source.canvas == canvas && source.start((int) sy) + sx < start((int) y) + x;
+        for (int i = 0; i < h; i++) {
+            int row = (int) (up ? h - 1 - i : i);
+            copyRow(source, (int) sx, (int) sy + row, (int) w, (int) x, (int) y + row);
+        }
+    }
+
+    private void copyRow(AsciiCanvas source, int sourceLeft, int sourceTop, int length, int left, int top) {
+        // the cut halves are found before the copy, since they may be copied when
+        // the source is this canvas, and blanked after it
+        int cut = cutWide(top, left, left + length);
+        int from = source.start(sourceTop) + sourceLeft;
+        int to = start(top) + left;
+        boolean[] sourceTails = source.storage.tails;
+        // whether the last character copied is a wide one without its tail
+        boolean cutTail = sourceTails != null
+                && source.firstColumn + sourceLeft + length < source.stride && sourceTails[from + length];
+        System.arraycopy(source.canvas, from, canvas, to, length);
+        // surrogate pairs cut by the edges of the copy
+        if (Character.isLowSurrogate(canvas[to])) {
+            canvas[to] = ' ';
+        }
+        if (Character.isHighSurrogate(canvas[to + length - 1])) {
+            canvas[to + length - 1] = ' ';
+        }
+        int[] sourceStyles = source.storage.styles;
+        if (sourceStyles != null) {
+            System.arraycopy(sourceStyles, from, styles(), to, length);
+        } else {
+            unstyle(to, to + length);
+        }
+        if (sourceTails != null) {
+            boolean[] tails = tails();
+            System.arraycopy(sourceTails, from, tails, to, length);
+            if (tails[to]) {
+                canvas[to] = ' ';
+                tails[to] = false;
+            }
+            if (cutTail) {
+                canvas[to + length - 1] = ' ';
+            }
+        } else {
+            untail(to, to + length);
+        }
+        blankCut(top, left, left + length, cut);
+        dirty[firstRow + top] = true;
+    }
+
     /**
      * returns the canvas as a list of strings.
      *
      * @return list of strings.
      */
     public List<String> getLines() {
-        List<String> lines = new ArrayList<>();
+        List<String> lines = new ArrayList<>(height);
         for (int i = 0; i < height; i++) {
-            lines.add(new String(canvas[i]));
+            lines.add(row(i));
         }
         return lines;
     }
 
     /**
-     * returns the canvas as a character array.
+     * Returns the rows that changed since the previous call.
+     * Only the rows touched by drawing are compared with their previous content,
+     * so the cost depends on what was drawn rather than on the canvas size. The
+     * first call returns all rows.
+     *
+     * @return changed rows by their top position.
+     */
+    public SortedMap<Integer, String> takeChangedLines() {
+        SortedMap<Integer, String> result = new TreeMap<>();
+        takeChanges(i -> result.put(i, row(i)));
+        return result;
+    }
+
+    /**
+     * Appends the rows that changed since the previous call, each preceded by the
+     * ANSI escape sequence that moves the cursor to the beginning of the row.
+     * Writing the result to a terminal showing the previous state of the canvas
+     * updates it to the current state. The rows of a region are placed where the
+     * region is in the canvas.
+     *
+     * @param out the builder to append the changes to.
+     * @return the builder.
+     * @see #takeChangedLines()
+     */
+    public StringBuilder takeChangesAnsi(StringBuilder out) {
+        takeChanges(i -> appendRowAnsi(i,
+                out.append("\u001B[").append(firstRow + i + 1).append(';').append(firstColumn + 1).append('H')));
+        return out;
+    }
+
+    /**
+     * Appends the canvas with the ANSI escape sequences of the styles of the
+     * drawn styled texts, every row followed by a line separator. A sequence is
+     * only emitted where the style changes, and the default style is restored at
+     * the end of every row.
+     *
+     * @param out the builder to append the canvas to.
+     * @return the builder.
+     */
+    public StringBuilder appendAnsi(StringBuilder out) {
+        for (int i = 0; i < height; i++) {
+            appendRowAnsi(i, out).append(Meta.LINES_SEPARATOR);
+        }
+        return out;
+    }
+
+    private void unstyle(int from, int to) {
+        int[] styles = storage.styles;
+        if (styles != null) {
+            Arrays.fill(styles, from, to, Style.NONE);
+        }
+    }
+
+    // returns the styles of the storage, allocated when first needed
+    private int[] styles() {
+        int[] styles = storage.styles;
+        if (styles == null) {
+            // regions drawn on in parallel may allocate the styles at the same time
+            synchronized (storage) {
+                styles = storage.styles;
+                if (styles == null) {
+                    styles = new int[canvas.length];
+                    storage.styles = styles;
+                }
+            }
+        }
+        return styles;
+    }
+
+    private void untail(int from, int to) {
+        boolean[] tails = storage.tails;
+        if (tails != null) {
+            Arrays.fill(tails, from, to, false);
+        }
+    }
+
+    // returns the second halves of wide characters of the storage, allocated when
+    // first needed
+    private boolean[] tails() {
+        boolean[] tails = storage.tails;
+        if (tails == null) {
+            synchronized (storage) {
+                tails = storage.tails;
+                if (tails == null) {
+                    tails = new boolean[canvas.length];
+                    storage.tails = tails;
+                }
+            }
+        }
+        return tails;
+    }
+
+    /**
+     * Returns whether the canvas has a style array.
+     */
+    boolean isStyled() {
+        return storage.styles != null;
+    }
+
+    /**
+     * Copies the cells of the canvas into the other canvas of the same size.
+     */
+    void copyTo(AsciiCanvas target) {
+        int[] styles = storage.styles;
+        boolean[] tails = storage.tails;
+        for (int i = 0; i < height; i++) {
+            System.arraycopy(canvas, start(i), target.canvas, target.start(i), width);
+            if (styles != null) {
+                System.arraycopy(styles, start(i), target.styles(), target.start(i), width);
+            } else {
+                target.unstyle(target.start(i), target.start(i) + width);
+            }
+            if (tails != null) {
+                System.arraycopy(tails, start(i), target.tails(), target.start(i), width);
+            } else {
+                target.untail(target.start(i), target.start(i) + width);
+            }
+        }
+    }
+
+    // blanks the halves of the wide characters and surrogate pairs cut by drawing
+    // over the cells from left to right, which would otherwise change the width
+    // of the row or leave a lone surrogate; the halves are looked for in the row
+    // of the storage, as they may lie outside of a region
+    private void clipWide(int top, int left, int right) {
+        blankCut(top, left, right, cutWide(top, left, right));
+    }
+
+    // blanks the high surrogate ending a text clipped between it and its pair
+    private void clipPair(int at, int length, int textLength) {
+        if (length < textLength && Character.isHighSurrogate(canvas[at + length - 1])) {
+            canvas[at + length - 1] = ' ';
+        }
+    }
+
+    // returns the halves of the wide characters and surrogate pairs that drawing
+    // over the cells from left to right would cut
+    private int cutWide(int top, int left, int right) {
+        int rowStart = start(top) - firstColumn;
+        int from = firstColumn + left;
+        int to = firstColumn + right;
+        return (from > 0 && left < width && isTail(rowStart, from) ? CUT_LEFT : 0)
+                | (to > 0 && to < stride && isTail(rowStart, to) ? CUT_RIGHT : 0);
+    }
+
+    // blanks the halves found by cutWide, next to the cells from left to right
+    private void blankCut(int top, int left, int right, int cut) {
+        int rowStart = start(top) - firstColumn;
+        if ((cut & CUT_LEFT) != 0) {
+            canvas[rowStart + firstColumn + left - 1] = ' ';
+        }
+        if ((cut & CUT_RIGHT) != 0) {
+            int at = rowStart + firstColumn + right;
+            canvas[at] = ' ';
+            untail(at, at + 1);
+        }
+    }
+
+    // whether the cell of the row, past the first one, holds the second half of a
+    // wide character or of a surrogate pair
+    private boolean isTail(int rowStart, int left) {
+        boolean[] tails = storage.tails;
+        int at = rowStart + left;
+        return tails != null && tails[at]
+                || Character.isLowSurrogate(canvas[at]) && Character.isHighSurrogate(canvas[at - 1]);
+    }
+
+    private String row(int top) {
+        if (storage.tails == null) {
+            return new String(canvas, start(top), width);
+        }
+        return appendRow(top, new StringBuilder(width)).toString();
+    }
+
+    // appends the row without the cells filled by the second half of wide characters
+    private StringBuilder appendRow(int top, StringBuilder sb) {
+        int from = start(top);
+        int to = from + width;
+        boolean[] tails = storage.tails;
+        if (tails == null) {
+            return sb.append(canvas, from, width);
+        }
+        for (int i = from; i < to; i++) {
+            if (!tails[i]) {
+                sb.append(canvas[i]);
+            }
+        }
+        return sb;
+    }
+
+    private StringBuilder appendRowAnsi(int top, StringBuilder sb) {
+        int[] styles = storage.styles;
+        if (styles == null) {
+            return appendRow(top, sb);
+        }
+        boolean[] tails = storage.tails;
+        int current = Style.NONE;
+        for (int i = start(top), to = i + width; i < to; i++) {
+            if (tails != null && tails[i]) {
+                continue;
+            }
+            if (styles[i] != current) {
+                current = styles[i];
+                Style.appendAnsi(current, sb);
+            }
+            sb.append(canvas[i]);
+        }
+        if (current != Style.NONE) {
+            Style.appendAnsi(Style.NONE, sb);
+        }
+        return sb;
+    }
+
+    private void takeChanges(IntConsumer changedRow) {
+        boolean first = snapshot == null;
+        if (first) {
+            snapshot = new char[width * height];
+        }
+        int[] styles = storage.styles;
+        if (styles != null && styleSnapshot == null) {
+            // the cells were not styled before
+            styleSnapshot = new int[width * height];
+        }
+        boolean[] tails = storage.tails;
+        if (tails != null && tailSnapshot == null) {
+            tailSnapshot = new boolean[width * height];
+        }
+        for (int i = 0; i < height; i++) {
+            // the dirty rows are shared with the regions, which compare all rows
+            // and leave the rows dirty for the canvas
+            if (!isRegion) {
+                if (!dirty[firstRow + i]) {
+                    continue;
+                }
+                dirty[firstRow + i] = false;
+            }
+            int from = start(i);
+            int to = from + width;
+            int at = i * width;
+            boolean stylesChanged = styles != null
+                    && !Arrays.equals(styles, from, to, styleSnapshot, at, at + width);
+            boolean tailsChanged = tails != null && !Arrays.equals(tails, from, to, tailSnapshot, at, at + width);
+            if (first || stylesChanged || tailsChanged
+                    || !Arrays.equals(canvas, from, to, snapshot, at, at + width)) {
+                System.arraycopy(canvas, from, snapshot, at, width);
+                if (stylesChanged) {
+                    System.arraycopy(styles, from, styleSnapshot, at, width);
+                }
+                if (tailsChanged) {
+                    System.arraycopy(tails, from, tailSnapshot, at, width);
+                }
+                changedRow.accept(i);
+            }
+        }
+    }
+
+    /**
+     * returns a copy of the canvas as a character array.
+     * Changes to the returned array are not reflected in the canvas.
      *
      * @return char array.
      */
     public char[][] getCanvas() {
-        return canvas;
+        char[][] result = new char[height][];
+        for (int i = 0; i < height; i++) {
+            result[i] = Arrays.copyOfRange(canvas, start(i), start(i) + width);
+        }
+        return result;
     }
 
     /**
@@ -129,7 +843,23 @@ public class AsciiCanvas {
     public char get(int left, int top) {
         checkRange(left, 0, width, "left");
         checkRange(top, 0, height, "top");
-        return canvas[top][left];
+        return canvas[start(top) + left];
+    }
+
+    /**
+     * Returns the style of the character at the specified position.
+     *
+     * @param left the left position.
+     * @param top  the top position.
+     * @return the style of the character at the specified position.
+     * @throws IndexOutOfBoundsException if the position is out of bounds.
+     * @see Style
+     */
+    public int getStyle(int left, int top) {
+        checkRange(left, 0, width, "left");
+        checkRange(top, 0, height, "top");
+        int[] styles = storage.styles;
+        return styles == null ? Style.NONE : styles[start(top) + left];
     }
 
     private void checkRange(int value, int min, int max, String argument) {
@@ -138,15 +868,228 @@ public class AsciiCanvas {
         }
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Appends the canvas, every row followed by a line separator.
+     *
+     * @param out the builder to append the canvas to.
+     * @return the builder.
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        for (int i = 0; i < height; i++) {
+            appendRow(i, out);
+            out.append(Meta.LINES_SEPARATOR);
+        }
+        return out;
+    }
+
+    /**
+     * Writes the canvas, every row followed by a line separator. The rows are
+     * written straight from the canvas, without building strings.
+     *
+     * @param out the writer to write the canvas to.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTo(Writer out) throws IOException {
+        try {
+            Cells write = (from, to) -> {
+                try {
+                    out.write(canvas, from, to - from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            for (int i = 0; i < height; i++) {
+                cells(i, write);
+                out.write(SEPARATOR);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the canvas encoded with the charset, every row followed by a line
+     * separator. The rows are encoded in bulk straight from the canvas into a
+     * buffer reused by the thread. Characters the charset cannot encode are
+     * replaced.
+     *
+     * @param out     the stream to write the canvas to.
+     * @param charset the charset to encode the canvas with.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTo(OutputStream out, Charset charset) throws IOException {
+        Encoding encoding = encoding(charset);
+        ByteBuffer buffer = encoding.buffer;
+        buffer.clear();
+        try {
+            encode(encoding.encoder, buffer, full -> {
+                try {
+                    out.write(full.array(), full.arrayOffset(), full.position());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                full.clear();
+                return full;
+            });
+            out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Encodes the canvas with the charset into the buffer, every row followed by a
+     * line separator.
+     *
+     * @param out     the buffer to encode the canvas into.
+     * @param charset the charset to encode the canvas with.
+     * @return the buffer.
+     * @throws BufferOverflowException if the canvas does not fit into the buffer.
+     * @see #writeTo(OutputStream, Charset)
+     */
+    public ByteBuffer writeTo(ByteBuffer out, Charset charset) {
+        encode(encoding(charset).encoder, out, full -> {
+            throw new BufferOverflowException();
+        });
+        return out;
+    }
+
+    /**
+     * Encodes the canvas with the charset into the buffers, filling them one after
+     * another, for a gathering write of the buffers. Every row is followed by a
+     * line separator.
+     *
+     * @param out     the buffers to encode the canvas into.
+     * @param charset the charset to encode the canvas with.
+     * @return the number of buffers written to.
+     * @throws BufferOverflowException if the canvas does not fit into the buffers.
+     * @see #writeTo(OutputStream, Charset)
+     */
+    public int writeTo(ByteBuffer[] out, Charset charset) {
+        if (out.length == 0) {
+            throw new BufferOverflowException();
+        }
+        int[] index = { 0 };
+        encode(encoding(charset).encoder, out[0], full -> {
+            if (++index[0] == out.length) {
+                throw new BufferOverflowException();
+            }
+            return out[index[0]];
+        });
+        return index[0] + 1;
+    }
+
+    private static Encoding encoding(Charset charset) {
+        Encoding encoding = ENCODING.get();
+        if (encoding == null || !encoding.encoder.charset().equals(charset)) {
+            encoding = new Encoding(charset);
+            ENCODING.set(encoding);
+        }
+        encoding.encoder.reset();
+        return encoding;
+    }
+
+    private void encode(CharsetEncoder encoder, ByteBuffer out, Spill spill) {
+        CharBuffer cells = CharBuffer.wrap(canvas);
+        CharBuffer separator = CharBuffer.wrap(SEPARATOR);
+        ByteBuffer[] current = { out };
+        Cells encode = (from, to) -> {
+            cells.limit(to).position(from);
+            current[0] = encode(encoder, cells, current[0], spill, false);
+            if (cells.hasRemaining()) {
+                // the encoder waits for the pair of a high surrogate ending the cells,
+                // which the next cells do not continue
+                current[0] = replace(encoder, current[0], spill);
+            }
+        };
         for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                sb.append(canvas[i][j]);
+            cells(i, encode);
+            separator.clear();
+            current[0] = encode(encoder, separator, current[0], spill, false);
+        }
+        cells.limit(0);
+        current[0] = encode(encoder, cells, current[0], spill, true);
+        while (encoder.flush(current[0]).isOverflow()) {
+            current[0] = spill.next(current[0]);
+        }
+    }
+
+    // puts the replacement of a malformed character, as the encoder does
+    private static ByteBuffer replace(CharsetEncoder encoder, ByteBuffer out, Spill spill) {
+        for (byte b : encoder.replacement()) {
+            if (!out.hasRemaining()) {
+                out = spill.next(out);
+            }
+            out.put(b);
+        }
+        return out;
+    }
+
+    private static ByteBuffer encode(CharsetEncoder encoder, CharBuffer in, ByteBuffer out, Spill spill,
+            boolean endOfInput) {
+        CoderResult result;
+        while ((result = encoder.encode(in, out, endOfInput)).isOverflow()) {
+            out = spill.next(out);
+        }
+        if (result.isError()) {
+            // not reached, errors are replaced
+            throw new IllegalStateException(result.toString());
+        }
+        return out;
+    }
+
+    // reports the ranges of the cells of the row that hold characters
+    private void cells(int top, Cells cells) {
+        int from = start(top);
+        int to = from + width;
+        boolean[] tails = storage.tails;
+        if (tails == null) {
+            cells.accept(from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            if (tails[i]) {
+                if (i > from) {
+                    cells.accept(from, i);
+                }
+                from = i + 1;
             }
-            sb.append(Meta.LINES_SEPARATOR);
         }
-        return sb.toString();
+        if (from < to) {
+            cells.accept(from, to);
+        }
+    }
+
+    // the state shared by a canvas and its regions
+    private static final class Storage {
+        // the styles of the cells, allocated when a styled text is first drawn
+        volatile int[] styles;
+        // the cells holding the second half of a character two columns wide,
+        // allocated when such a character is first drawn
+        volatile boolean[] tails;
+    }
+
+    private interface Cells {
+        void accept(int from, int to);
+    }
+
+    // provides the buffer to continue encoding into when the buffer is full
+    private interface Spill {
+        ByteBuffer next(ByteBuffer full);
+    }
+
+    private static final class Encoding {
+        final CharsetEncoder encoder;
+        final ByteBuffer buffer = ByteBuffer.allocate(ENCODE_BUFFER_SIZE);
+
+        Encoding(Charset charset) {
+            encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder((width + Meta.LINES_SEPARATOR.length()) * height)).toString();
     }
 }
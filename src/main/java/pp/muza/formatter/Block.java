@@ -0,0 +1,264 @@
+package pp.muza.formatter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Lazily composed block of lines.
+ * <p>
+ * A block records how it was composed from other blocks and only builds its
+ * lines when they are requested, so composing a layout out of many joins costs
+ * nothing until the layout is rendered, and rendering it is linear in the size
+ * of the output. Blocks are immutable, provided the lists they were created from
+ * are not changed.
+ *
+ * @author 47niemand
+ * @see LineFormatter#joinHorizontal(Block, Block)
+ * @see LineFormatter#joinVertical(Block, Block)
+ */
+public abstract class Block {
+
+    private final int height;
+
+    Block(int height) {
+        this.height = height;
+    }
+
+    /**
+     * Creates a block of the lines. The list is not copied, and must not be changed
+     * while the block is in use.
+     *
+     * @param lines the lines
+     * @return the block
+     */
+    public static Block of(List<String> lines) {
+        return new Lines(lines);
+    }
+
+    /**
+     * Returns the number of lines of the block.
+     *
+     * @return the number of lines
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Builds the line at the specified index.
+     *
+     * @param index the index of the line
+     * @return the line
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public String getLine(int index) {
+        if (index < 0 || index >= height) {
+            throw new IndexOutOfBoundsException("index is out of bounds");
+        }
+        StringBuilder sb = new StringBuilder();
+        appendLine(index, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Builds all lines of the block.
+     *
+     * @return the lines
+     */
+    public List<String> toLines() {
+        List<String> result = new ArrayList<>(height);
+        Cursor cursor = cursor();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < height; i++) {
+            sb.setLength(0);
+            cursor.appendNext(sb);
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Appends all lines of the block, every line followed by a line separator.
+     *
+     * @param out the builder to append the lines to
+     * @return the builder
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        Cursor cursor = cursor();
+        for (int i = 0; i < height; i++) {
+            cursor.appendNext(out);
+            out.append(Meta.LINES_SEPARATOR);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the line at the specified index, nothing if the block has no such
+     * line.
+     */
+    abstract void appendLine(int index, StringBuilder sb);
+
+    /**
+     * Returns a cursor appending the lines one after another, which is cheaper
+     * than appending them by index.
+     */
+    abstract Cursor cursor();
+
+    /**
+     * Sequential access to the lines of a block.
+     */
+    interface Cursor {
+
+        /**
+         * Appends the next line, nothing if there are no more lines.
+         */
+        void appendNext(StringBuilder sb);
+    }
+
+    private static final class Lines extends Block {
+
+        private final List<String> lines;
+
+        Lines(List<String> lines) {
+            super(lines.size());
+            this.lines = lines;
+        }
+
+        @Override
+        void appendLine(int index, StringBuilder sb) {
+            if (index < lines.size()) {
+                sb.append(lines.get(index));
+            }
+        }
+
+        @Override
+        Cursor cursor() {
+            return new Cursor() {
+                private int index;
+
+                @Override
+                public void appendNext(StringBuilder sb) {
+                    appendLine(index++, sb);
+                }
+            };
+        }
+    }
+
+    static final class Horizontal extends Block {
+
+        private final Block left;
+        private final Block right;
+
+        Horizontal(Block left, Block right) {
+            super(Math.max(left.getHeight(), right.getHeight()));
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void appendLine(int index, StringBuilder sb) {
+            for (Block part : parts()) {
+                part.appendLine(index, sb);
+            }
+        }
+
+        @Override
+        Cursor cursor() {
+            List<Block> parts = parts();
+            Cursor[] cursors = new Cursor[parts.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = parts.get(i).cursor();
+            }
+            return sb -> {
+                for (Cursor cursor : cursors) {
+                    cursor.appendNext(sb);
+                }
+            };
+        }
+
+        // the blocks joined from left to right, with the nested horizontal joins
+        // flattened without recursion, so that a long chain of joins does not
+        // nest as deep as it is long
+        private List<Block> parts() {
+            List<Block> parts = new ArrayList<>();
+            Deque<Block> stack = new ArrayDeque<>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                Block block = stack.pop();
+                if (block instanceof Horizontal) {
+                    stack.push(((Horizontal) block).right);
+                    stack.push(((Horizontal) block).left);
+                } else {
+                    parts.add(block);
+                }
+            }
+            return parts;
+        }
+    }
+
+    static final class Vertical extends Block {
+
+        private final Block top;
+        private final Block bottom;
+
+        Vertical(Block top, Block bottom) {
+            super(top.getHeight() + bottom.getHeight());
+            this.top = top;
+            this.bottom = bottom;
+        }
+
+        @Override
+        void appendLine(int index, StringBuilder sb) {
+            Block block = this;
+            while (block instanceof Vertical) {
+                Vertical vertical = (Vertical) block;
+                if (index < vertical.top.getHeight()) {
+                    block = vertical.top;
+                } else {
+                    index -= vertical.top.getHeight();
+                    block = vertical.bottom;
+                }
+            }
+            block.appendLine(index, sb);
+        }
+
+        @Override
+        Cursor cursor() {
+            // the blocks joined from top to bottom, with the nested vertical joins
+            // flattened without recursion; the cursor of a block is created once
+            // its lines are reached
+            Deque<Block> stack = new ArrayDeque<>();
+            stack.push(this);
+            return new Cursor() {
+                private Cursor current;
+                private int remaining;
+
+                @Override
+                public void appendNext(StringBuilder sb) {
+                    while (remaining == 0) {
+                        if (stack.isEmpty()) {
+                            return;
+                        }
+                        Block block = stack.pop();
+                        if (block instanceof Vertical) {
+                            stack.push(((Vertical) block).bottom);
+                            stack.push(((Vertical) block).top);
+                        } else {
+                            current = block.cursor();
+                            remaining = block.getHeight();
+                        }
+                    }
+                    remaining--;
+                    current.appendNext(sb);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package pp.muza.formatter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Text formatter that remembers the results of {@link LineFormatter} calls.
+ * <p>
+ * The results are kept in a size-bounded cache, the least recently used ones are
+ * evicted first. The cache is split into independently locked segments, so
+ * concurrent callers only contend when their arguments hash to the same
+ * segment. The returned lists are immutable and shared between callers.
+ *
+ * @author 47niemand
+ */
+public final class CachingLineFormatter {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a formatter caching up to the specified number of results.
+     *
+     * @param maximumSize the maximum number of cached results
+     * @throws IllegalArgumentException if the maximum size is less than 1
+     */
+    public CachingLineFormatter(int maximumSize) {
+        this(maximumSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a formatter caching up to the specified number of results.
+     *
+     * @param maximumSize      the maximum number of cached results
+     * @param concurrencyLevel the expected number of concurrent callers
+     * @throws IllegalArgumentException if the maximum size or the concurrency
+     *                                  level is less than 1
+     */
+    public CachingLineFormatter(int maximumSize, int concurrencyLevel) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("concurrencyLevel must be positive");
+        }
+        int count = 1;
+        while (count < concurrencyLevel && count * 2 <= maximumSize) {
+            count <<= 1;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // spread the capacity so that the total never exceeds the maximum size
+            segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns a cached result of
+     * {@link LineFormatter#textWrap(String, int, char)}.
+     *
+     * @param text  the text to wrap
+     * @param width the width of the text
+     * @param space the padding character
+     * @return the wrapped text, immutable
+     */
+    public List<String> textWrap(String text, int width, char space) {
+        Key key = new Key(text, width, -1, null, space);
+        return get(key, () -> LineFormatter.textWrap(text, width, space));
+    }
+
+    /**
+     * Returns a cached result of
+     * {@link LineFormatter#textRectangle(int, int, String, LineFormatter.Border, char)}.
+     *
+     * @param width  the width of the rectangle
+     * @param height the height of the rectangle
+     * @param text   the text to fit into the rectangle
+     * @param border the border
+     * @param pad    the padding character
+     * @return the rectangle, immutable
+     * @throws IllegalArgumentException if the width or height is less than 1
+     */
+    public List<String> textRectangle(int width, int height, String text, LineFormatter.Border border, char pad) {
+        Key key = new Key(text, width, height, Objects.requireNonNull(border), pad);
+        return get(key, () -> LineFormatter.textRectangle(width, height, text, border, pad));
+    }
+
+    /**
+     * Returns the number of calls answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of calls that had to be computed.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return the size of the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all cached results. The hit and miss counters are not reset.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private List<String> get(Key key, Supplier<List<String>> compute) {
+        Segment segment = segments[key.hash & (segments.length - 1)];
+        List<String> result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        // computed outside the lock, concurrent misses of the same key may both compute
+        List<String> computed = List.copyOf(compute.get());
+        synchronized (segment) {
+            result = segment.putIfAbsent(key, computed);
+        }
+        return result != null ? result : computed;
+    }
+
+    /**
+     * Access-ordered map evicting the least recently used entry when full.
+     */
+    private static final class Segment extends LinkedHashMap<Key, List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<String>> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Arguments of a formatter call. The height and border are unset for
+     * {@code textWrap}.
+     */
+    private static final class Key {
+
+        private final String text;
+        private final int width;
+        private final int height;
+        private final LineFormatter.Border border;
+        private final char pad;
+        private final int hash;
+
+        Key(String text, int width, int height, LineFormatter.Border border, char pad) {
+            this.text = text;
+            this.width = width;
+            this.height = height;
+            this.border = border;
+            this.pad = pad;
+            int h = text.hashCode();
+            h = 31 * h + width;
+            h = 31 * h + height;
+            h = 31 * h + (border == null ? -1 : border.ordinal());
+            h = 31 * h + pad;
+            // spread the high bits, the segment is selected by the low ones
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && pad == key.pad && border == key.border
+                    && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
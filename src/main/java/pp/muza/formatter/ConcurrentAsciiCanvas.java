@@ -0,0 +1,679 @@
+package pp.muza.formatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe {@link AsciiCanvas}, for several threads painting one canvas.
+ * <p>
+ * The rows are guarded by stripes of locks, by default one per row. Drawing on a
+ * row only locks the stripe of the row, so threads drawing on different stripes
+ * never contend. Drawing several lines, as {@link #pasteLines(int, int, List)}
+ * does, locks the rows one after another, so other threads may see some of the
+ * lines drawn and not the others.
+ * <p>
+ * {@link #getLines()}, {@link #toString()} and the other methods reading the
+ * whole canvas work on a {@link #snapshot()}: the canvas is copied without
+ * locking and the copy is kept if no row was drawn on meanwhile, which the locks
+ * tell. Only if the rows keep changing are the stripes locked for reading, one
+ * after another, for the time of the copy. Clearing the canvas and taking the
+ * changes lock all stripes.
+ * <p>
+ * A {@link #region(int, int, int, int) region} of the canvas draws and reads
+ * under the locks of the rows of the canvas it covers, so threads drawing on
+ * regions of different stripes never contend.
+ *
+ * @author 47niemand
+ */
+public class ConcurrentAsciiCanvas extends AsciiCanvas {
+
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    private final StampedLock[] stripes;
+    private final int rowsPerStripe;
+
+    /**
+     * Creates a canvas with a lock per row.
+     *
+     * @param width  the width of the canvas.
+     * @param height the height of the canvas.
+     */
+    public ConcurrentAsciiCanvas(int width, int height) {
+        this(width, height, height);
+    }
+
+    /**
+     * Creates a canvas with the specified number of stripes of locks. Every stripe
+     * guards the same number of adjacent rows.
+     *
+     * @param width   the width of the canvas.
+     * @param height  the height of the canvas.
+     * @param stripes the number of stripes.
+     * @throws IllegalArgumentException if the number of stripes is less than 1.
+     */
+    public ConcurrentAsciiCanvas(int width, int height, int stripes) {
+        super(width, height);
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        rowsPerStripe = Math.max(1, (height + stripes - 1) / stripes);
+        this.stripes = new StampedLock[Math.max(1, (height + rowsPerStripe - 1) / rowsPerStripe)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new StampedLock();
+        }
+    }
+
+    private StampedLock stripe(int top) {
+        return stripes[stripeIndex(top)];
+    }
+
+    private int stripeIndex(int top) {
+        return Math.min(Math.max(top, 0) / rowsPerStripe, stripes.length - 1);
+    }
+
+    @Override
+    public void clear(char c) {
+        if (stripes == null) {
+            // called by the constructor of the canvas, before the stripes exist
+            super.clear(c);
+            return;
+        }
+        long[] stamps = lockAll();
+        try {
+            super.clear(c);
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    @Override
+    public void drawText(int left, int top, String text) {
+        StampedLock lock = stripe(top);
+        long stamp = lock.writeLock();
+        try {
+            super.drawText(left, top, text);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void drawStyledText(int left, int top, StyledText text) {
+        if (!isStyled()) {
+            // the first styled text allocates the styles of all rows
+            long[] stamps = lockAll();
+            try {
+                super.drawStyledText(left, top, text);
+            } finally {
+                unlockAll(stamps);
+            }
+            return;
+        }
+        StampedLock lock = stripe(top);
+        long stamp = lock.writeLock();
+        try {
+            super.drawStyledText(left, top, text);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void drawText(int left, int top, CharSequence text) {
+        if (text instanceof String) {
+            drawText(left, top, (String) text);
+            return;
+        }
+        if (text instanceof StyledText) {
+            drawStyledText(left, top, (StyledText) text);
+            return;
+        }
+        StampedLock lock = stripe(top);
+        long stamp = lock.writeLock();
+        try {
+            super.drawText(left, top, text);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void drawText(int left, int top, String text, LineFormatter.Measure measure) {
+        if (measure == LineFormatter.Measure.CHARS) {
+            drawText(left, top, text);
+            return;
+        }
+        StampedLock lock = stripe(top);
+        long stamp = lock.writeLock();
+        try {
+            super.drawText(left, top, text, measure);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void fillRect(int left, int top, int width, int height, char c) {
+        long[] stamps = lockRows(top, (long) top + height);
+        try {
+            super.fillRect(left, top, width, height, c);
+        } finally {
+            unlockRows(top, stamps);
+        }
+    }
+
+    @Override
+    public void drawBox(int left, int top, int width, int height, LineFormatter.Border border) {
+        long[] stamps = lockRows(top, (long) top + height);
+        try {
+            super.drawBox(left, top, width, height, border);
+        } finally {
+            unlockRows(top, stamps);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A source drawn on by other threads is copied from its {@link #snapshot()}.
+     */
+    @Override
+    public void blit(AsciiCanvas source, int sourceLeft, int sourceTop, int sourceWidth, int sourceHeight,
+            int left, int top) {
+        if (source != this && !isRegion(source)) {
+            source = stable(source);
+        }
+        long[] stamps;
+        int first;
+        if (!isStyled() && source.isStyled() || isRegion(source)) {
+            // the styled source allocates the styles of all rows, and the rows of a
+            // region of this canvas are anywhere in it
+            stamps = lockAll();
+            first = 0;
+        } else if (source == this) {
+            // the rows copied from are locked as well
+            first = Math.min(top, sourceTop);
+            stamps = lockRows(first, Math.max((long) top, sourceTop) + sourceHeight);
+        } else {
+            first = top;
+            stamps = lockRows(top, (long) top + sourceHeight);
+        }
+        try {
+            super.blit(source, sourceLeft, sourceTop, sourceWidth, sourceHeight, left, top);
+        } finally {
+            unlockRows(first, stamps);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The region draws and reads under the locks of the rows of this canvas it
+     * covers, and so do its regions. A row is locked as a whole, so regions may
+     * be drawn on in parallel even with wide characters crossing their edges.
+     */
+    @Override
+    public AsciiCanvas region(int left, int top, int width, int height) {
+        return super.region(left, top, width, height);
+    }
+
+    @Override
+    AsciiCanvas newRegion(int left, int top, int width, int height) {
+        return new Region(this, left, top, width, height, top);
+    }
+
+    // whether the canvas is a region of this canvas
+    private boolean isRegion(AsciiCanvas canvas) {
+        return canvas instanceof Region && ((Region) canvas).root() == this;
+    }
+
+    // returns a copy of a canvas drawn on by other threads, which may be read
+    // without its locks
+    private static AsciiCanvas stable(AsciiCanvas canvas) {
+        if (canvas instanceof ConcurrentAsciiCanvas) {
+            return ((ConcurrentAsciiCanvas) canvas).snapshot();
+        }
+        if (canvas instanceof Region) {
+            return ((Region) canvas).snapshot();
+        }
+        return canvas;
+    }
+
+    /**
+     * Returns a consistent copy of the canvas, which does not change when this
+     * canvas is drawn on.
+     *
+     * @return the copy of the canvas.
+     */
+    public AsciiCanvas snapshot() {
+        AsciiCanvas copy = new AsciiCanvas(getWidth(), getHeight());
+        long[] stamps = new long[stripes.length];
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            if (tryOptimisticRead(stamps)) {
+                copyTo(copy);
+                if (validate(stamps)) {
+                    return copy;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].readLock();
+        }
+        try {
+            copyTo(copy);
+        } finally {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].unlockRead(stamps[i]);
+            }
+        }
+        return copy;
+    }
+
+    private boolean tryOptimisticRead(long[] stamps) {
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].tryOptimisticRead();
+            if (stamps[i] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean validate(long[] stamps) {
+        for (int i = 0; i < stripes.length; i++) {
+            if (!stripes[i].validate(stamps[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> getLines() {
+        return snapshot().getLines();
+    }
+
+    @Override
+    public char[][] getCanvas() {
+        return snapshot().getCanvas();
+    }
+
+    @Override
+    public StringBuilder appendAnsi(StringBuilder out) {
+        return snapshot().appendAnsi(out);
+    }
+
+    @Override
+    public StringBuilder appendTo(StringBuilder out) {
+        return snapshot().appendTo(out);
+    }
+
+    @Override
+    public void writeTo(Writer out) throws IOException {
+        snapshot().writeTo(out);
+    }
+
+    @Override
+    public void writeTo(OutputStream out, Charset charset) throws IOException {
+        snapshot().writeTo(out, charset);
+    }
+
+    @Override
+    public ByteBuffer writeTo(ByteBuffer out, Charset charset) {
+        return snapshot().writeTo(out, charset);
+    }
+
+    @Override
+    public int writeTo(ByteBuffer[] out, Charset charset) {
+        return snapshot().writeTo(out, charset);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    @Override
+    public SortedMap<Integer, String> takeChangedLines() {
+        long[] stamps = lockAll();
+        try {
+            return super.takeChangedLines();
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    @Override
+    public StringBuilder takeChangesAnsi(StringBuilder out) {
+        long[] stamps = lockAll();
+        try {
+            return super.takeChangesAnsi(out);
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    @Override
+    public char get(int left, int top) {
+        StampedLock lock = stripe(top);
+        long stamp = lock.readLock();
+        try {
+            return super.get(left, top);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int getStyle(int left, int top) {
+        StampedLock lock = stripe(top);
+        long stamp = lock.readLock();
+        try {
+            return super.getStyle(left, top);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // locks all stripes in order, so that threads locking them all cannot deadlock
+    private long[] lockAll() {
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].writeLock();
+        }
+        return stamps;
+    }
+
+    // locks the stripes of the rows from top to bottom, exclusive, in order
+    private long[] lockRows(int top, long bottom) {
+        return lockRows(top, bottom, false);
+    }
+
+    private long[] lockRows(int top, long bottom, boolean read) {
+        if (bottom <= top || bottom <= 0 || top >= getHeight()) {
+            return new long[0];
+        }
+        int first = stripeIndex(top);
+        int last = stripeIndex((int) Math.min(bottom, getHeight()) - 1);
+        long[] stamps = new long[last - first + 1];
+        for (int i = 0; i < stamps.length; i++) {
+            stamps[i] = read ? stripes[first + i].readLock() : stripes[first + i].writeLock();
+        }
+        return stamps;
+    }
+
+    // unlocks the stripes locked by lockRows, for reading or writing
+    private void unlockRows(int top, long[] stamps) {
+        int first = stamps.length == 0 ? 0 : stripeIndex(top);
+        for (int i = stamps.length - 1; i >= 0; i--) {
+            stripes[first + i].unlock(stamps[i]);
+        }
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlockWrite(stamps[i]);
+        }
+    }
+
+    /**
+     * Region of the canvas, which draws and reads under the locks of the rows of
+     * the canvas it covers. The drawing primitives of {@link AsciiCanvas} do not
+     * call the overridden methods, so the locks, which are not reentrant, are only
+     * taken once.
+     */
+    private final class Region extends AsciiCanvas {
+
+        // the row of the canvas the region starts at
+        private final int rootTop;
+
+        Region(AsciiCanvas parent, int left, int top, int width, int height, int rootTop) {
+            super(parent, left, top, width, height);
+            this.rootTop = rootTop;
+        }
+
+        ConcurrentAsciiCanvas root() {
+            return ConcurrentAsciiCanvas.this;
+        }
+
+        @Override
+        AsciiCanvas newRegion(int left, int top, int width, int height) {
+            return new Region(this, left, top, width, height, rootTop + top);
+        }
+
+        @Override
+        public void clear(char c) {
+            long[] stamps = lock(0, getHeight(), false);
+            try {
+                super.clear(c);
+            } finally {
+                unlock(0, stamps);
+            }
+        }
+
+        @Override
+        public void drawText(int left, int top, String text) {
+            long[] stamps = lock(top, top + 1L, false);
+            try {
+                super.drawText(left, top, text);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        @Override
+        public void drawStyledText(int left, int top, StyledText text) {
+            if (!isStyled()) {
+                // the first styled text allocates the styles of all rows
+                long[] stamps = lockAll();
+                try {
+                    super.drawStyledText(left, top, text);
+                } finally {
+                    unlockAll(stamps);
+                }
+                return;
+            }
+            long[] stamps = lock(top, top + 1L, false);
+            try {
+                super.drawStyledText(left, top, text);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        @Override
+        public void drawText(int left, int top, CharSequence text) {
+            if (text instanceof String) {
+                drawText(left, top, (String) text);
+                return;
+            }
+            if (text instanceof StyledText) {
+                drawStyledText(left, top, (StyledText) text);
+                return;
+            }
+            long[] stamps = lock(top, top + 1L, false);
+            try {
+                super.drawText(left, top, text);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        @Override
+        public void drawText(int left, int top, String text, LineFormatter.Measure measure) {
+            if (measure == LineFormatter.Measure.CHARS) {
+                drawText(left, top, text);
+                return;
+            }
+            long[] stamps = lock(top, top + 1L, false);
+            try {
+                super.drawText(left, top, text, measure);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        @Override
+        public void fillRect(int left, int top, int width, int height, char c) {
+            long[] stamps = lock(top, (long) top + height, false);
+            try {
+                super.fillRect(left, top, width, height, c);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        @Override
+        public void drawBox(int left, int top, int width, int height, LineFormatter.Border border) {
+            long[] stamps = lock(top, (long) top + height, false);
+            try {
+                super.drawBox(left, top, width, height, border);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        @Override
+        public void blit(AsciiCanvas source, int sourceLeft, int sourceTop, int sourceWidth, int sourceHeight,
+                int left, int top) {
+            boolean shared = source == root() || isRegion(source);
+            if (!shared) {
+                source = stable(source);
+            }
+            if (shared || !isStyled() && source.isStyled()) {
+                // the rows of the canvas copied from are anywhere in it, or the styled
+                // source allocates the styles of all rows
+                long[] stamps = lockAll();
+                try {
+                    super.blit(source, sourceLeft, sourceTop, sourceWidth, sourceHeight, left, top);
+                } finally {
+                    unlockAll(stamps);
+                }
+                return;
+            }
+            long[] stamps = lock(top, (long) top + sourceHeight, false);
+            try {
+                super.blit(source, sourceLeft, sourceTop, sourceWidth, sourceHeight, left, top);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        // copies the region with the rows locked for reading
+        AsciiCanvas snapshot() {
+            AsciiCanvas copy = new AsciiCanvas(getWidth(), getHeight());
+            long[] stamps = lock(0, getHeight(), true);
+            try {
+                copyTo(copy);
+            } finally {
+                unlock(0, stamps);
+            }
+            return copy;
+        }
+
+        @Override
+        public List<String> getLines() {
+            return snapshot().getLines();
+        }
+
+        @Override
+        public char[][] getCanvas() {
+            return snapshot().getCanvas();
+        }
+
+        @Override
+        public StringBuilder appendAnsi(StringBuilder out) {
+            return snapshot().appendAnsi(out);
+        }
+
+        @Override
+        public StringBuilder appendTo(StringBuilder out) {
+            return snapshot().appendTo(out);
+        }
+
+        @Override
+        public void writeTo(Writer out) throws IOException {
+            snapshot().writeTo(out);
+        }
+
+        @Override
+        public void writeTo(OutputStream out, Charset charset) throws IOException {
+            snapshot().writeTo(out, charset);
+        }
+
+        @Override
+        public ByteBuffer writeTo(ByteBuffer out, Charset charset) {
+            return snapshot().writeTo(out, charset);
+        }
+
+        @Override
+        public int writeTo(ByteBuffer[] out, Charset charset) {
+            return snapshot().writeTo(out, charset);
+        }
+
+        @Override
+        public String toString() {
+            return snapshot().toString();
+        }
+
+        @Override
+        public SortedMap<Integer, String> takeChangedLines() {
+            long[] stamps = lock(0, getHeight(), false);
+            try {
+                return super.takeChangedLines();
+            } finally {
+                unlock(0, stamps);
+            }
+        }
+
+        @Override
+        public StringBuilder takeChangesAnsi(StringBuilder out) {
+            long[] stamps = lock(0, getHeight(), false);
+            try {
+                return super.takeChangesAnsi(out);
+            } finally {
+                unlock(0, stamps);
+            }
+        }
+
+        @Override
+        public char get(int left, int top) {
+            long[] stamps = lock(top, top + 1L, true);
+            try {
+                return super.get(left, top);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        @Override
+        public int getStyle(int left, int top) {
+            long[] stamps = lock(top, top + 1L, true);
+            try {
+                return super.getStyle(left, top);
+            } finally {
+                unlock(top, stamps);
+            }
+        }
+
+        // locks the stripes of the rows of the region from top to bottom, exclusive
+        private long[] lock(long top, long bottom, boolean read) {
+            return lockRows(rootTop + clip(top), rootTop + clip(bottom), read);
+        }
+
+        private void unlock(long top, long[] stamps) {
+            unlockRows(rootTop + clip(top), stamps);
+        }
+
+        private int clip(long row) {
+            return (int) Math.max(0, Math.min(row, getHeight()));
+        }
+    }
+}
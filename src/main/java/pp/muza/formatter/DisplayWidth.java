@@ -0,0 +1,212 @@
+package pp.muza.formatter;
+
+import java.util.Arrays;
+
+/**
+ * Measures the number of terminal columns a text occupies.
+ * <p>
+ * East Asian wide and fullwidth characters and most emoji occupy two columns,
+ * combining marks and other zero-width characters occupy none, and all other
+ * characters occupy one. Surrogate pairs are measured as a single character.
+ * The widths follow the Unicode East Asian Width property and the general
+ * categories of the marks, approximated by a table of ranges.
+ * <p>
+ * Pure ASCII texts, the common case, are detected by a single branch after a
+ * loop over the characters and measured by their length.
+ *
+ * @author 47niemand
+ */
+public final class DisplayWidth {
+
+    // {first, last, width} of every range of characters not one column wide;
+    // zero-width ranges come last and take precedence
+    private static final int[][] RANGES = {
+            { 0x1100, 0x115F, 2 }, { 0x231A, 0x231B, 2 }, { 0x2329, 0x232A, 2 }, { 0x23E9, 0x23EC, 2 },
+            { 0x23F0, 0x23F0, 2 }, { 0x23F3, 0x23F3, 2 }, { 0x25FD, 0x25FE, 2 }, { 0x2614, 0x2615, 2 },
+            { 0x2648, 0x2653, 2 }, { 0x267F, 0x267F, 2 }, { 0x2693, 0x2693, 2 }, { 0x26A1, 0x26A1, 2 },
+            { 0x26AA, 0x26AB, 2 }, { 0x26BD, 0x26BE, 2 }, { 0x26C4, 0x26C5, 2 }, { 0x26CE, 0x26CE, 2 },
+            { 0x26D4, 0x26D4, 2 }, { 0x26EA, 0x26EA, 2 }, { 0x26F2, 0x26F3, 2 }, { 0x26F5, 0x26F5, 2 },
+            { 0x26FA, 0x26FA, 2 }, { 0x26FD, 0x26FD, 2 }, { 0x2705, 0x2705, 2 }, { 0x270A, 0x270B, 2 },
+            { 0x2728, 0x2728, 2 }, { 0x274C, 0x274C, 2 }, { 0x274E, 0x274E, 2 }, { 0x2753, 0x2755, 2 },
+            { 0x2757, 0x2757, 2 }, { 0x2795, 0x2797, 2 }, { 0x27B0, 0x27B0, 2 }, { 0x27BF, 0x27BF, 2 },
+            { 0x2B1B, 0x2B1C, 2 }, { 0x2B50, 0x2B50, 2 }, { 0x2B55, 0x2B55, 2 }, { 0x2E80, 0x303E, 2 },
+            { 0x3041, 0x33FF, 2 }, { 0x3400, 0x4DBF, 2 }, { 0x4E00, 0x9FFF, 2 }, { 0xA000, 0xA4CF, 2 },
+            { 0xA960, 0xA97F, 2 }, { 0xAC00, 0xD7A3, 2 }, { 0xF900, 0xFAFF, 2 }, { 0xFE10, 0xFE19, 2 },
+            { 0xFE30, 0xFE6F, 2 }, { 0xFF00, 0xFF60, 2 }, { 0xFFE0, 0xFFE6, 2 },
+            { 0x16FE0, 0x16FE4, 2 }, { 0x17000, 0x18AFF, 2 }, { 0x1B000, 0x1B2FF, 2 }, { 0x1F004, 0x1F004, 2 },
+            { 0x1F0CF, 0x1F0CF, 2 }, { 0x1F18E, 0x1F18E, 2 }, { 0x1F191, 0x1F19A, 2 }, { 0x1F200, 0x1F202, 2 },
+            { 0x1F210, 0x1F23B, 2 }, { 0x1F240, 0x1F248, 2 }, { 0x1F250, 0x1F251, 2 }, { 0x1F260, 0x1F265, 2 },
+            { 0x1F300, 0x1F64F, 2 }, { 0x1F680, 0x1F6FF, 2 }, { 0x1F7E0, 0x1F7EB, 2 }, { 0x1F90C, 0x1F9FF, 2 },
+            { 0x1FA70, 0x1FAFF, 2 }, { 0x20000, 0x2FFFD, 2 }, { 0x30000, 0x3FFFD, 2 },
+            { 0x0080, 0x009F, 0 }, { 0x0300, 0x036F, 0 }, { 0x0483, 0x0489, 0 }, { 0x0591, 0x05BD, 0 },
+            { 0x05BF, 0x05BF, 0 }, { 0x05C1, 0x05C2, 0 }, { 0x05C4, 0x05C5, 0 }, { 0x05C7, 0x05C7, 0 },
+            { 0x0610, 0x061A, 0 }, { 0x064B, 0x065F, 0 }, { 0x0670, 0x0670, 0 }, { 0x06D6, 0x06DC, 0 },
+            { 0x06DF, 0x06E4, 0 }, { 0x06E7, 0x06E8, 0 }, { 0x06EA, 0x06ED, 0 }, { 0x0900, 0x0902, 0 },
+            { 0x093A, 0x093A, 0 }, { 0x093C, 0x093C, 0 }, { 0x0941, 0x0948, 0 }, { 0x094D, 0x094D, 0 },
+            { 0x0951, 0x0957, 0 }, { 0x0962, 0x0963, 0 }, { 0x0E31, 0x0E31, 0 }, { 0x0E34, 0x0E3A, 0 },
+            { 0x0E47, 0x0E4E, 0 }, { 0x1160, 0x11FF, 0 }, { 0x1AB0, 0x1AFF, 0 }, { 0x1DC0, 0x1DFF, 0 },
+            { 0x200B, 0x200F, 0 }, { 0x202A, 0x202E, 0 }, { 0x2060, 0x2064, 0 }, { 0x20D0, 0x20FF, 0 },
+            { 0x302A, 0x302D, 0 }, { 0x3099, 0x309A, 0 }, { 0xFE00, 0xFE0F, 0 }, { 0xFE20, 0xFE2F, 0 },
+            { 0xFEFF, 0xFEFF, 0 }, { 0xE0001, 0xE0001, 0 }, { 0xE0020, 0xE007F, 0 }, { 0xE0100, 0xE01EF, 0 },
+    };
+
+    private static final int BLOCK_BITS = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    // two-stage table of the basic multilingual plane: the index maps the high
+    // byte of a character to one of the distinct blocks of widths
+    private static final char[] BMP_INDEX = new char[0x10000 >> BLOCK_BITS];
+    private static final byte[] BMP_BLOCKS;
+
+    // sorted supplementary ranges for binary search
+    private static final int[] SUPPLEMENTARY_FIRST;
+    private static final int[] SUPPLEMENTARY_LAST;
+    private static final byte[] SUPPLEMENTARY_WIDTH;
+
+    static {
+        byte[] bmp = new byte[0x10000];
+        Arrays.fill(bmp, (byte) 1);
+        int supplementary = 0;
+        for (int[] range : RANGES) {
+            if (range[0] < 0x10000) {
+                Arrays.fill(bmp, range[0], range[1] + 1, (byte) range[2]);
+            } else {
+                supplementary++;
+            }
+        }
+        byte[] blocks = new byte[bmp.length];
+        int blockCount = 0;
+        for (int i = 0; i < BMP_INDEX.length; i++) {
+            int from = i * BLOCK_SIZE;
+            int block = 0;
+            while (block < blockCount && !Arrays.equals(blocks, block * BLOCK_SIZE, (block + 1) * BLOCK_SIZE,
+                    bmp, from, from + BLOCK_SIZE)) {
+                block++;
+            }
+            if (block == blockCount) {
+                System.arraycopy(bmp, from, blocks, block * BLOCK_SIZE, BLOCK_SIZE);
+                blockCount++;
+            }
+            BMP_INDEX[i] = (char) block;
+        }
+        BMP_BLOCKS = Arrays.copyOf(blocks, blockCount * BLOCK_SIZE);
+
+        int[][] ranges = Arrays.stream(RANGES).filter(r -> r[0] >= 0x10000).sorted((a, b) -> a[0] - b[0])
+                .toArray(int[][]::new);
+        SUPPLEMENTARY_FIRST = new int[supplementary];
+        SUPPLEMENTARY_LAST = new int[supplementary];
+        SUPPLEMENTARY_WIDTH = new byte[supplementary];
+        for (int i = 0; i < supplementary; i++) {
+            SUPPLEMENTARY_FIRST[i] = ranges[i][0];
+            SUPPLEMENTARY_LAST[i] = ranges[i][1];
+            SUPPLEMENTARY_WIDTH[i] = (byte) ranges[i][2];
+        }
+    }
+
+    private DisplayWidth() {
+    }
+
+    /**
+     * Returns the number of columns the code point occupies.
+     *
+     * @param codePoint the code point
+     * @return 0, 1 or 2
+     */
+    public static int of(int codePoint) {
+        if (codePoint < 0x10000) {
+            return BMP_BLOCKS[(BMP_INDEX[codePoint >> BLOCK_BITS] << BLOCK_BITS) | (codePoint & (BLOCK_SIZE - 1))];
+        }
+        int i = Arrays.binarySearch(SUPPLEMENTARY_FIRST, codePoint);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return i >= 0 && codePoint <= SUPPLEMENTARY_LAST[i] ? SUPPLEMENTARY_WIDTH[i] : 1;
+    }
+
+    /**
+     * Returns the number of columns the text occupies.
+     *
+     * @param s the text
+     * @return the width of the text
+     */
+    public static int of(CharSequence s) {
+        return of(s, 0, s.length());
+    }
+
+    /**
+     * Returns the number of columns a range of the text occupies.
+     *
+     * @param s    the text
+     * @param from the start of the range, inclusive
+     * @param to   the end of the range, exclusive
+     * @return the width of the range
+     */
+    public static int of(CharSequence s, int from, int to) {
+        int bits = 0;
+        for (int i = from; i < to; i++) {
+            bits |= s.charAt(i);
+        }
+        if (bits < 0x80) {
+            return to - from;
+        }
+        int width = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            // a surrogate pair ending outside of the range is not counted as a pair
+            if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1))) {
+                width += of(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                width += of(c);
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Returns the end of the longest range of the text that starts at the given
+     * position and occupies at most the given number of columns. Surrogate pairs
+     * are never split, and zero-width characters following the range are
+     * included in it.
+     *
+     * @param s     the text
+     * @param from  the start of the range
+     * @param width the maximum width of the range
+     * @return the end of the range, exclusive
+     */
+    public static int fit(CharSequence s, int from, int width) {
+        int i = from;
+        int used = 0;
+        while (i < s.length()) {
+            int codePoint = Character.codePointAt(s, i);
+            used += of(codePoint);
+            if (used > width) {
+                break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the start of the longest range of the text that ends at the end of
+     * the text and occupies at most the given number of columns. Surrogate pairs
+     * are never split.
+     *
+     * @param s     the text
+     * @param width the maximum width of the range
+     * @return the start of the range, inclusive
+     */
+    public static int fitFromEnd(CharSequence s, int width) {
+        int i = s.length();
+        int used = 0;
+        while (i > 0) {
+            int codePoint = Character.codePointBefore(s, i);
+            used += of(codePoint);
+            if (used > width) {
+                break;
+            }
+            i -= Character.charCount(codePoint);
+        }
+        return i;
+    }
+}
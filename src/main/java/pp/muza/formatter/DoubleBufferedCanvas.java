@@ -0,0 +1,189 @@
+package pp.muza.formatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Pair of canvases, one drawn on while the other is read.
+ * <p>
+ * A frame is drawn on the {@link #getBack() back canvas} and published to the
+ * readers by {@link #swap()}, which exchanges the canvases without copying
+ * them. The readers only ever see the front canvas, so they never see a frame
+ * being drawn. The canvases are reused from frame to frame, so drawing and
+ * swapping allocate nothing; after a swap the back canvas holds the frame
+ * before the published one.
+ * <p>
+ * One thread draws and swaps, any number of threads read. A swap waits for the
+ * readers of the front canvas to finish, since the canvas is drawn on next.
+ *
+ * @author 47niemand
+ */
+public final class DoubleBufferedCanvas {
+
+    private final int width;
+    private final int height;
+    private final StampedLock lock = new StampedLock();
+    // guarded by the lock
+    private AsciiCanvas front;
+    private long frame;
+    // only used by the drawing thread
+    private AsciiCanvas back;
+
+    /**
+     * Creates a pair of blank canvases.
+     *
+     * @param width  the width of the canvases.
+     * @param height the height of the canvases.
+     */
+    public DoubleBufferedCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+        front = new AsciiCanvas(width, height);
+        back = new AsciiCanvas(width, height);
+    }
+
+    /**
+     * Returns the canvas to draw the next frame on. Only the drawing thread may
+     * use it.
+     *
+     * @return the back canvas.
+     */
+    public AsciiCanvas getBack() {
+        return back;
+    }
+
+    /**
+     * Publishes the back canvas to the readers and makes the front canvas the
+     * back one.
+     */
+    public void swap() {
+        long stamp = lock.writeLock();
+        try {
+            AsciiCanvas published = back;
+            back = front;
+            front = published;
+            frame++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of frames published.
+     *
+     * @return the number of swaps.
+     */
+    public long getFrame() {
+        long stamp = lock.readLock();
+        try {
+            return frame;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads the front canvas. The canvas is not swapped while it is read, and must
+     * not be drawn on or kept by the reader.
+     *
+     * @param reader the function reading the canvas.
+     * @param <T>    the type of the result.
+     * @return the result of the reader.
+     */
+    public <T> T read(Function<? super AsciiCanvas, T> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.apply(front);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the lines of the front canvas.
+     *
+     * @return list of strings.
+     * @see AsciiCanvas#getLines()
+     */
+    public List<String> getLines() {
+        return read(AsciiCanvas::getLines);
+    }
+
+    /**
+     * Appends the front canvas, every row followed by a line separator.
+     *
+     * @param out the builder to append the canvas to.
+     * @return the builder.
+     * @see AsciiCanvas#appendTo(StringBuilder)
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        long stamp = lock.readLock();
+        try {
+            return front.appendTo(out);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Writes the front canvas, every row followed by a line separator.
+     *
+     * @param out the writer to write the canvas to.
+     * @throws IOException if an I/O error occurs.
+     * @see AsciiCanvas#writeTo(Writer)
+     */
+    public void writeTo(Writer out) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            front.writeTo(out);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Writes the front canvas encoded with the charset, every row followed by a
+     * line separator.
+     *
+     * @param out     the stream to write the canvas to.
+     * @param charset the charset to encode the canvas with.
+     * @throws IOException if an I/O error occurs.
+     * @see AsciiCanvas#writeTo(OutputStream, Charset)
+     */
+    public void writeTo(OutputStream out, Charset charset) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            front.writeTo(out, charset);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the width of the canvases.
+     *
+     * @return width of the canvases.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the canvases.
+     *
+     * @return height of the canvases.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return read(AsciiCanvas::toString);
+    }
+}
@@ -0,0 +1,271 @@
+package pp.muza.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of boxes compiled once and rendered many times with different texts.
+ * <p>
+ * The layout is a frame of fixed size holding boxes, each box a
+ * {@link LineFormatter#textRectangle(int, int, String, LineFormatter.Border, char,
+ * LineFormatter.Align) text rectangle} whose text is a slot of the template, and
+ * fixed labels. The frame with the borders, the padding and the labels is drawn
+ * when the template is built, and the position of the text area of every slot is
+ * computed then. Rendering copies the frame and only wraps and aligns the texts
+ * of the slots into it, so it allocates nothing but the wrapped lines when the
+ * output buffer is reused. Templates are immutable and may be rendered by several
+ * threads at once.
+ *
+ * <pre>
+ * LayoutTemplate template = LayoutTemplate.builder(40, 5, ' ')
+ *         .box(0, 0, 20, 5, LineFormatter.Border.ALL, LineFormatter.Align.CENTER_MIDDLE)
+ *         .box(20, 0, 20, 5, LineFormatter.Border.ALL, LineFormatter.Align.LEFT_TOP)
+ *         .build();
+ * String report = template.render("name", "description");
+ * </pre>
+ *
+ * @author 47niemand
+ */
+public final class LayoutTemplate {
+
+    private final int width;
+    private final int height;
+    // the rows of the frame, every row followed by a line separator
+    private final char[] frame;
+    private final Slot[] slots;
+
+    private LayoutTemplate(int width, int height, char[] frame, Slot[] slots) {
+        this.width = width;
+        this.height = height;
+        this.frame = frame;
+        this.slots = slots;
+    }
+
+    /**
+     * Returns a builder of a template.
+     *
+     * @param width  the width of the layout
+     * @param height the height of the layout
+     * @param pad    the padding character
+     * @return the builder
+     * @throws IllegalArgumentException if the width or height is less than 1
+     */
+    public static Builder builder(int width, int height, char pad) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("width and height must be positive");
+        }
+        return new Builder(width, height, pad);
+    }
+
+    /**
+     * Renders the layout with the texts of the slots, every row followed by a line
+     * separator.
+     *
+     * @param values the texts of the slots, in the order the boxes were added;
+     *               missing and {@code null} texts leave the boxes empty
+     * @return the rendered layout
+     * @throws IllegalArgumentException if there are more texts than slots
+     */
+    public String render(CharSequence... values) {
+        char[] out = new char[frame.length];
+        render(out, 0, values);
+        return new String(out);
+    }
+
+    /**
+     * Renders the layout with the texts of the slots into the array, every row
+     * followed by a line separator. The array may be reused for the next
+     * rendering.
+     *
+     * @param out    the array to render the layout into
+     * @param offset the position in the array to render the layout at
+     * @param values the texts of the slots, in the order the boxes were added;
+     *               missing and {@code null} texts leave the boxes empty
+     * @return the position in the array after the layout
+     * @throws IllegalArgumentException  if there are more texts than slots
+     * @throws IndexOutOfBoundsException if the layout does not fit into the array
+     * @see #getLength()
+     */
+    public int render(char[] out, int offset, CharSequence... values) {
+        if (values.length > slots.length) {
+            throw new IllegalArgumentException("there are " + slots.length + " slots, not " + values.length);
+        }
+        if (offset < 0 || offset > out.length - frame.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + " and length " + frame.length
+                    + " are out of bounds for length " + out.length);
+        }
+        System.arraycopy(frame, 0, out, offset, frame.length);
+        StringBuilder sb = null;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && values[i].length() > 0) {
+                if (sb == null) {
+                    sb = new StringBuilder(width);
+                }
+                slots[i].render(values[i].toString(), out, offset, sb);
+            }
+        }
+        return offset + frame.length;
+    }
+
+    /**
+     * Returns the number of characters of the rendered layout, line separators
+     * included.
+     *
+     * @return the length of the rendered layout
+     */
+    public int getLength() {
+        return frame.length;
+    }
+
+    /**
+     * Returns the number of slots of the template.
+     *
+     * @return the number of slots
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the width of the layout.
+     *
+     * @return the width of the layout
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the layout.
+     *
+     * @return the height of the layout
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * The text area of a box.
+     */
+    private static final class Slot {
+
+        private final char pad;
+        private final int stride;
+        private final int top;
+        private final int height;
+        private final LineFormatter.Border border;
+        private final LineFormatter.Align align;
+        // the text area, relative to the layout
+        private final int textLeft;
+        private final int textWidth;
+
+        Slot(char pad, int stride, int left, int top, int width, int height, LineFormatter.Border border,
+                LineFormatter.Align align) {
+            this.pad = pad;
+            this.stride = stride;
+            this.top = top;
+            this.height = height;
+            this.border = border;
+            this.align = align;
+            this.textLeft = left + (border.left ? 1 : 0);
+            this.textWidth = width - (border.left ? 1 : 0) - (border.right ? 1 : 0);
+        }
+
+        // fills the text area as LineFormatter.textRectangle does
+        void render(String text, char[] out, int offset, StringBuilder sb) {
+            List<String> lines = LineFormatter.textWrap(text, textWidth, pad);
+            int textTop = LineFormatter.textTop(height, lines.size(), border, align);
+            int j = LineFormatter.firstLine(textTop, border, align);
+            int from = Math.max(textTop, border.top ? 1 : 0);
+            int to = height - (border.bottom ? 1 : 0);
+            for (int i = from; i < to && j < lines.size(); i++, j++) {
+                sb.setLength(0);
+                LineFormatter.appendAligned(lines, j, textWidth, pad, align.horizontal, sb);
+                sb.getChars(0, Math.min(sb.length(), textWidth), out, offset + (top + i) * stride + textLeft);
+            }
+        }
+    }
+
+    /**
+     * Builder of a template. The boxes and labels are drawn in the order they are
+     * added, over what was drawn before.
+     */
+    public static final class Builder {
+
+        private final int width;
+        private final int height;
+        private final char pad;
+        private final AsciiCanvas frame;
+        private final List<int[]> boxes = new ArrayList<>();
+        private final List<LineFormatter.Border> borders = new ArrayList<>();
+        private final List<LineFormatter.Align> aligns = new ArrayList<>();
+
+        private Builder(int width, int height, char pad) {
+            this.width = width;
+            this.height = height;
+            this.pad = pad;
+            this.frame = new AsciiCanvas(width, height);
+            frame.clear(pad);
+        }
+
+        /**
+         * Adds a box, whose text is the next slot of the template.
+         *
+         * @param left   the left position of the box
+         * @param top    the top position of the box
+         * @param width  the width of the box
+         * @param height the height of the box
+         * @param border the border of the box
+         * @param align  the alignment of the text in the box
+         * @return this builder
+         * @throws IllegalArgumentException if the box is not inside the layout, or
+         *                                  has no room for the text between its
+         *                                  left and right borders
+         */
+        public Builder box(int left, int top, int width, int height, LineFormatter.Border border,
+                LineFormatter.Align align) {
+            if (left < 0 || top < 0 || width < 1 || height < 1 || width > this.width - left
+                    || height > this.height - top) {
+                throw new IllegalArgumentException("box is out of the layout");
+            }
+            if (width - (border.left ? 1 : 0) - (border.right ? 1 : 0) < 1) {
+                throw new IllegalArgumentException("box is too narrow");
+            }
+            frame.fillRect(left, top, width, height, pad);
+            frame.drawBox(left, top, width, height, border);
+            boxes.add(new int[] { left, top, width, height });
+            borders.add(border);
+            aligns.add(align);
+            return this;
+        }
+
+        /**
+         * Adds a fixed text, clipped to the layout.
+         *
+         * @param left the left position of the text
+         * @param top  the top position of the text
+         * @param text the text
+         * @return this builder
+         */
+        public Builder label(int left, int top, String text) {
+            frame.drawText(left, top, text);
+            return this;
+        }
+
+        /**
+         * Builds the template. The builder may be used further, without affecting
+         * the built template.
+         *
+         * @return the template
+         */
+        public LayoutTemplate build() {
+            int stride = width + Meta.LINES_SEPARATOR.length();
+            Slot[] slots = new Slot[boxes.size()];
+            for (int i = 0; i < slots.length; i++) {
+                int[] box = boxes.get(i);
+                slots[i] = new Slot(pad, stride, box[0], box[1], box[2], box[3], borders.get(i), aligns.get(i));
+            }
+            return new LayoutTemplate(width, height, frame.toString().toCharArray(), slots);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package pp.muza.formatter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Breaks a line of text into wrapped lines by one of the
+ * {@link LineFormatter.Wrap} strategies, handling the words that do not fit into
+ * the width as specified by the {@link LineFormatter.Overflow}.
+ * <p>
+ * A line of several words fits when it is shorter than the width, as in
+ * {@link LineFormatter#textWrap(String, int, char)}, so split words are cut into
+ * pieces one character shorter than the width. The optimal strategy minimizes
+ * the sum of the squared free space at the end of all lines but the last, the
+ * way Knuth and Plass break paragraphs, by dynamic programming over the words.
+ * Every line considered is limited to {@link #WINDOW} words, so the cost stays
+ * linear in the length of the paragraph even when the width is very large.
+ *
+ * @author 47niemand
+ */
+final class LineBreaker {
+
+    /**
+     * The maximum number of words on a line considered by the optimal strategy.
+     */
+    static final int WINDOW = 1024;
+
+    private final CharSequence text;
+    private final int width;
+    private final char space;
+    // the words, or the pieces of the split words, as ranges of the text
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    // whether the piece is followed by a hyphen
+    private boolean[] hyphens = new boolean[16];
+    private int count;
+
+    private LineBreaker(CharSequence text, int width, char space) {
+        this.text = text;
+        this.width = width;
+        this.space = space;
+    }
+
+    /**
+     * Wraps a line of the text, which is trimmed first, and adds the wrapped lines
+     * to the result. An empty line is wrapped to a single empty line.
+     *
+     * @param text     the text
+     * @param from     the start of the line
+     * @param to       the end of the line, exclusive
+     * @param width    the width of the text
+     * @param space    the character to separate the words with
+     * @param wrap     the wrapping strategy
+     * @param overflow how to handle the words that do not fit
+     * @param result   the list to add the wrapped lines to
+     */
+    static void wrap(CharSequence text, int from, int to, int width, char space, LineFormatter.Wrap wrap,
+            LineFormatter.Overflow overflow, List<String> result) {
+        LineBreaker breaker = new LineBreaker(text, width, space);
+        breaker.split(from, to, overflow);
+        if (breaker.count == 0) {
+            result.add("");
+        } else if (wrap == LineFormatter.Wrap.OPTIMAL) {
+            breaker.optimal(result);
+        } else {
+            breaker.greedy(result);
+        }
+    }
+
+    private void split(int from, int to, LineFormatter.Overflow overflow) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        int capacity = Math.max(1, width - 1);
+        boolean hyphenate = overflow == LineFormatter.Overflow.HYPHENATE && capacity > 1;
+        int i = from;
+        while (i < to) {
+            int wordEnd = i;
+            while (wordEnd < to && !LineFormatter.isWordDelimiter(text.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            if (overflow != LineFormatter.Overflow.KEEP) {
+                // cut the pieces, keeping the surrogate pairs together: a piece of one
+                // char takes the pair whole, though it is then longer than the line
+                int piece = hyphenate ? capacity - 1 : capacity;
+                while (wordEnd - i > capacity) {
+                    int end = i + piece;
+                    if (Character.isHighSurrogate(text.charAt(end - 1))
+                            && Character.isLowSurrogate(text.charAt(end))) {
+                        end += piece > 1 ? -1 : 1;
+                    }
+                    add(i, end, hyphenate);
+                    i = end;
+                }
+            }
+            add(i, wordEnd, false);
+            i = wordEnd;
+            while (i < to && LineFormatter.isWordDelimiter(text.charAt(i))) {
+                i++;
+            }
+        }
+    }
+
+    private void add(int start, int end, boolean hyphen) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            hyphens = Arrays.copyOf(hyphens, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        hyphens[count] = hyphen;
+        count++;
+    }
+
+    private int length(int word) {
+        return ends[word] - starts[word] + (hyphens[word] ? 1 : 0);
+    }
+
+    private void greedy(List<String> result) {
+        int first = 0;
+        int lineLength = length(0);
+        for (int i = 1; i < count; i++) {
+            int wordLength = length(i);
+            if (1 + wordLength + lineLength >= width) {
+                result.add(line(first, i));
+                first = i;
+                lineLength = wordLength;
+            } else {
+                lineLength += 1 + wordLength;
+            }
+        }
+        result.add(line(first, count));
+    }
+
+    private void optimal(List<String> result) {
+        // cost[j] is the minimal cost of breaking the first j words, and the last
+        // line of that breaking starts at word first[j]
+        double[] cost = new double[count + 1];
+        int[] first = new int[count + 1];
+        for (int j = 1; j <= count; j++) {
+            cost[j] = Double.POSITIVE_INFINITY;
+            long lineLength = -1;
+            for (int i = j - 1; i >= 0 && i >= j - WINDOW; i--) {
+                lineLength += 1 + length(i);
+                if (i < j - 1 && lineLength >= width) {
+                    break;
+                }
+                double slack = j == count || lineLength >= width ? 0 : width - 1 - lineLength;
+                double total = cost[i] + slack * slack;
+                if (total < cost[j]) {
+                    cost[j] = total;
+                    first[j] = i;
+                }
+            }
+        }
+        int[] breaks = new int[count + 1];
+        int lines = 0;
+        for (int j = count; j > 0; j = first[j]) {
+            breaks[lines++] = j;
+        }
+        int start = 0;
+        while (lines > 0) {
+            int end = breaks[--lines];
+            result.add(line(start, end));
+            start = end;
+        }
+    }
+
+    private String line(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                sb.append(space);
+            }
+            sb.append(text, starts[i], ends[i]);
+            if (hyphens[i]) {
+                sb.append('-');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,7 +1,18 @@
 package pp.muza.formatter;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Text-formatting utility class.
@@ -10,128 +21,942 @@ import java.util.List;
  */
 public final class LineFormatter {
 
+    /**
+     * The text length below which {@link #textWrapParallel} wraps a chunk of the
+     * text in the current thread.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
     private LineFormatter() {
     }
 
     /**
-     * Converts the list of strings to a single string with line separators.
+     * Converts the list of strings to a single string with line separators.
+     *
+     * @param lines list of strings
+     * @return string with line separators
+     */
+    public static String linesToString(List<String> lines) {
+        return String.join(Meta.LINES_SEPARATOR, lines);
+    }
+
+    /**
+     * Returns a lines with the text wrapped to the specified line width.
+     * if a single word exceeds line width, it doesn't wrap.
+     * if a text contains line separators, it starts a new line.
+     *
+     * @param text  the text to wrap
+     * @param width the width of the text
+     * @param space the padding character
+     * @return the wrapped text
+     * @throws IllegalArgumentException if the width is less than or equal to 0.
+     */
+    public static List<String> textWrap(String text, int width, char space) {
+        List<String> result = new ArrayList<>();
+        if (text.isEmpty()) {
+            result.add(text);
+            return result;
+        }
+        int end = contentEnd(text);
+        if (end > 0) {
+            wrapLines(text, 0, end, width, space, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a lines with the text wrapped to the specified line width, measured
+     * as specified.
+     *
+     * @param text    the text to wrap
+     * @param width   the width of the text
+     * @param space   the padding character
+     * @param measure how to measure the width of the words
+     * @return the wrapped text
+     * @see #textWrap(String, int, char)
+     */
+    public static List<String> textWrap(String text, int width, char space, Measure measure) {
+        if (measure == Measure.CHARS) {
+            return textWrap(text, width, space);
+        }
+        List<String> result = new ArrayList<>();
+        if (text.isEmpty()) {
+            result.add(text);
+            return result;
+        }
+        int end = contentEnd(text);
+        if (end > 0) {
+            wrapLines(text, 0, end, width, space, measure, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a lines with the text wrapped to the specified line width by the
+     * specified strategy. Each line of the text is wrapped on its own.
+     *
+     * @param text     the text to wrap
+     * @param width    the width of the text
+     * @param space    the padding character
+     * @param wrap     the wrapping strategy
+     * @param overflow how to handle the words that do not fit into the width
+     * @return the wrapped text
+     * @see #textWrap(String, int, char)
+     */
+    public static List<String> textWrap(String text, int width, char space, Wrap wrap, Overflow overflow) {
+        if (wrap == Wrap.GREEDY && overflow == Overflow.KEEP) {
+            return textWrap(text, width, space);
+        }
+        List<String> result = new ArrayList<>();
+        if (text.isEmpty()) {
+            result.add(text);
+            return result;
+        }
+        int end = contentEnd(text);
+        int start = 0;
+        while (start < end) {
+            int lineEnd = text.indexOf('\n', start);
+            if (lineEnd < 0 || lineEnd > end) {
+                lineEnd = end;
+            }
+            LineBreaker.wrap(text, start, lineEnd, width, space, wrap, overflow, result);
+            if (lineEnd == end) {
+                break;
+            }
+            start = lineEnd + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a lines with the styled text wrapped to the specified line width.
+     * The lines are the same as the ones of {@link #textWrap(String, int, char)},
+     * and keep the styles of the text; the padding character replacing the word
+     * delimiters takes the style of the first of them.
+     *
+     * @param text  the text to wrap
+     * @param width the width of the text
+     * @param space the padding character
+     * @return the wrapped text
+     */
+    public static List<StyledText> textWrap(StyledText text, int width, char space) {
+        WrappedLines wrapped = new WrappedLines();
+        wrapped.wrap(text, width);
+        List<StyledText> result = new ArrayList<>(wrapped.size());
+        for (int i = 0; i < wrapped.size(); i++) {
+            int from = wrapped.start(i);
+            int to = wrapped.end(i);
+            StyledText.Builder line = StyledText.builder();
+            int word = from;
+            while (word < to) {
+                int wordEnd = word;
+                while (wordEnd < to && !isWordDelimiter(text.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+                line.append(text, word, wordEnd);
+                if (wordEnd == to) {
+                    break;
+                }
+                line.append(space, 1, text.getStyle(wordEnd));
+                word = wordEnd;
+                while (word < to && isWordDelimiter(text.charAt(word))) {
+                    word++;
+                }
+            }
+            result.add(line.build());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a lines with the text wrapped to the specified line width, wrapping
+     * the lines of large texts in parallel in the common fork/join pool.
+     * The result is the same as the one of {@link #textWrap(String, int, char)}.
+     *
+     * @param text  the text to wrap
+     * @param width the width of the text
+     * @param space the padding character
+     * @return the wrapped text
+     */
+    public static List<String> textWrapParallel(String text, int width, char space) {
+        return textWrapParallel(text, width, space, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a lines with the text wrapped to the specified line width, wrapping
+     * the lines of large texts in parallel in the given fork/join pool.
+     * The text is split into chunks at line separators, the chunks are wrapped
+     * independently and the results are joined in order.
+     * The result is the same as the one of {@link #textWrap(String, int, char)}.
+     *
+     * @param text  the text to wrap
+     * @param width the width of the text
+     * @param space the padding character
+     * @param pool  the pool to wrap the chunks in
+     * @return the wrapped text
+     */
+    public static List<String> textWrapParallel(String text, int width, char space, ForkJoinPool pool) {
+        return textWrapParallel(text, width, space, pool, PARALLEL_THRESHOLD);
+    }
+
+    static List<String> textWrapParallel(String text, int width, char space, ForkJoinPool pool, int threshold) {
+        if (text.length() <= threshold) {
+            return textWrap(text, width, space);
+        }
+        int end = contentEnd(text);
+        if (end == 0) {
+            return new ArrayList<>();
+        }
+        return pool.invoke(new WrapTask(text, 0, end, width, space, threshold));
+    }
+
+    /**
+     * Returns the end of the text without the trailing empty lines, which are
+     * dropped the same way String.split drops them.
+     *
+     * @param text the text
+     * @return the end of the text content
+     */
+    static int contentEnd(CharSequence text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == '\n') {
+            end--;
+            if (end > 0 && text.charAt(end - 1) == '\r') {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Wraps the text read from the reader to the specified line width, passing the
+     * lines to the consumer as soon as they are complete.
+     * The lines are the same as the ones returned by
+     * {@link #textWrap(String, int, char)}, but the text is never held in memory as
+     * a whole.
+     *
+     * @param reader   the text to wrap
+     * @param width    the width of the text
+     * @param space    the padding character
+     * @param consumer the consumer of the wrapped lines
+     * @throws IOException if an I/O error occurs
+     */
+    public static void textWrap(Reader reader, int width, char space, Consumer<String> consumer)
+            throws IOException {
+        try {
+            new TextWrapIterator(reader, width, space).forEachRemaining(consumer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns a lazy stream of the lines of the text read from the reader, wrapped
+     * to the specified line width.
+     * The text is read as the stream is consumed. I/O errors are rethrown as
+     * {@link UncheckedIOException}.
+     *
+     * @param reader the text to wrap
+     * @param width  the width of the text
+     * @param space  the padding character
+     * @return the stream of wrapped lines
+     * @see #textWrap(String, int, char)
+     */
+    public static Stream<String> textWrapStream(Reader reader, int width, char space) {
+        return toStream(new TextWrapIterator(reader, width, space));
+    }
+
+    /**
+     * Returns a lazy stream of the lines of the text, wrapped to the specified line
+     * width.
+     *
+     * @param text  the text to wrap
+     * @param width the width of the text
+     * @param space the padding character
+     * @return the stream of wrapped lines
+     * @see #textWrap(String, int, char)
+     */
+    public static Stream<String> textWrapStream(CharSequence text, int width, char space) {
+        return toStream(new TextWrapIterator(text, width, space));
+    }
+
+    private static Stream<String> toStream(TextWrapIterator iterator) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Wraps every line of the text range to the specified width.
+     * A carriage return before a line feed needs no special handling, since it is
+     * trimmed from the line together with the other whitespace.
+     *
+     * @param text   the text to wrap
+     * @param from   the start of the range, inclusive
+     * @param to     the end of the range, exclusive
+     * @param width  the width of the text
+     * @param space  the padding character
+     * @param result the list to add the wrapped lines to
+     */
+    static void wrapLines(CharSequence text, int from, int to, int width, char space, List<String> result) {
+        wrapLines(text, from, to, width, space, Measure.CHARS, result);
+    }
+
+    private static void wrapLines(CharSequence text, int from, int to, int width, char space, Measure measure,
+            List<String> result) {
+        StringBuilder line = new StringBuilder();
+        int start = from;
+        while (true) {
+            int end = start;
+            while (end < to && text.charAt(end) != '\n') {
+                end++;
+            }
+            wrapLine(text, start, end, width, space, measure, line, result);
+            if (end == to) {
+                break;
+            }
+            start = end + 1;
+        }
+    }
+
+    private static void wrapLine(CharSequence text, int from, int to, int width, char space, Measure measure,
+            StringBuilder line, List<String> result) {
+        // trim the line the same way String.trim does
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        line.setLength(0);
+        int lineWidth = 0;
+        int i = from;
+        while (i < to) {
+            int wordEnd = i;
+            while (wordEnd < to && !isWordDelimiter(text.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            int wordWidth = measure == Measure.CHARS ? wordEnd - i : DisplayWidth.of(text, i, wordEnd);
+            if (line.length() == 0) {
+                // if the line is empty, add the word
+                line.append(text, i, wordEnd);
+                lineWidth = wordWidth;
+            } else if (1 + wordWidth + lineWidth >= width) {
+                // if the line is too long, emit it and start a new line with the word
+                result.add(line.toString());
+                line.setLength(0);
+                line.append(text, i, wordEnd);
+                lineWidth = wordWidth;
+            } else {
+                // if the line is not too long, add the word to the line
+                line.append(space).append(text, i, wordEnd);
+                lineWidth += 1 + wordWidth;
+            }
+            i = wordEnd;
+            while (i < to && isWordDelimiter(text.charAt(i))) {
+                i++;
+            }
+        }
+        result.add(line.toString());
+    }
+
+    /**
+     * Checks whether the character separates words, see {@link Meta#WORDS_DELIMITER}.
+     *
+     * @param c the character
+     * @return true if the character is a word delimiter
+     */
+    static boolean isWordDelimiter(char c) {
+        return c == ' ' || c == '\t' || c == '\u000B' || c == '\r';
+    }
+
+    /**
+     * Returns a string with the text centered and trimmed to the specified width.
+     * A text of the specified width is returned as it is.
+     *
+     * @param s     the text to center and trim
+     * @param width the width of the text
+     * @param pad   the padding character
+     * @return the centered and trimmed text
+     * @throws IllegalArgumentException if the width is less than 1
+     */
+    public static String centerTrim(String s, int width, char pad) {
+        checkPositive(width, "width");
+        if (s.length() >= width) {
+            return s.substring(0, width);
+        }
+        if (s.isEmpty()) {
+            return PadTable.run(pad, width);
+        }
+        return centerTrim(s, width, pad, new StringBuilder(width)).toString();
+    }
+
+    /**
+     * Appends the text centered and trimmed to the specified width.
+     *
+     * @param s     the text to center and trim
+     * @param width the width of the text
+     * @param pad   the padding character
+     * @param out   the builder to append the text to
+     * @return the builder
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #centerTrim(String, int, char)
+     */
+    public static StringBuilder centerTrim(String s, int width, char pad, StringBuilder out) {
+        checkPositive(width, "width");
+        if (s.length() >= width) {
+            return out.append(s, 0, width);
+        }
+        int left = (width - s.length()) / 2;
+        int right = width - s.length() - left;
+        PadTable.append(out, pad, left);
+        out.append(s);
+        PadTable.append(out, pad, right);
+        return out;
+    }
+
+    /**
+     * Writes the text centered and trimmed to the specified width into the array.
+     *
+     * @param s      the text to center and trim
+     * @param width  the width of the text
+     * @param pad    the padding character
+     * @param out    the array to write the text to
+     * @param offset the position in the array to write the text at
+     * @return the position in the array after the text
+     * @throws IllegalArgumentException  if the width is less than 1
+     * @throws IndexOutOfBoundsException if the text does not fit into the array
+     * @see #centerTrim(String, int, char)
+     */
+    public static int centerTrim(String s, int width, char pad, char[] out, int offset) {
+        checkPositive(width, "width");
+        checkFits(out, offset, width);
+        if (s.length() >= width) {
+            s.getChars(0, width, out, offset);
+        } else {
+            int left = (width - s.length()) / 2;
+            Arrays.fill(out, offset, offset + left, pad);
+            s.getChars(0, s.length(), out, offset + left);
+            Arrays.fill(out, offset + left + s.length(), offset + width, pad);
+        }
+        return offset + width;
+    }
+
+    /**
+     * Returns a string with the text padded to the specified width.
+     * The padding is added to the right.
+     * If the text is longer than the specified width, the text is trimmed.
+     * A text of the specified width is returned as it is.
+     *
+     * @param s     the text to pad
+     * @param width the width of the text
+     * @param pad   the padding character
+     * @return the padded text
+     * @throws IllegalArgumentException if the width is less than 1
+     */
+    public static String rightAlignTrim(String s, int width, char pad) {
+        checkPositive(width, "width");
+        if (s.length() >= width) {
+            return s.substring(0, width);
+        }
+        if (s.isEmpty()) {
+            return PadTable.run(pad, width);
+        }
+        return rightAlignTrim(s, width, pad, new StringBuilder(width)).toString();
+    }
+
+    /**
+     * Appends the text padded to the specified width.
+     * The padding is added to the right.
+     * If the text is longer than the specified width, the text is trimmed.
+     *
+     * @param s     the text to pad
+     * @param width the width of the text
+     * @param pad   the padding character
+     * @param out   the builder to append the text to
+     * @return the builder
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #rightAlignTrim(String, int, char)
+     */
+    public static StringBuilder rightAlignTrim(String s, int width, char pad, StringBuilder out) {
+        checkPositive(width, "width");
+        if (s.length() > width) {
+            return out.append(s, 0, width);
+        }
+        out.append(s);
+        PadTable.append(out, pad, width - s.length());
+        return out;
+    }
+
+    /**
+     * Writes the text padded to the specified width into the array.
+     * The padding is added to the right.
+     * If the text is longer than the specified width, the text is trimmed.
+     *
+     * @param s      the text to pad
+     * @param width  the width of the text
+     * @param pad    the padding character
+     * @param out    the array to write the text to
+     * @param offset the position in the array to write the text at
+     * @return the position in the array after the text
+     * @throws IllegalArgumentException  if the width is less than 1
+     * @throws IndexOutOfBoundsException if the text does not fit into the array
+     * @see #rightAlignTrim(String, int, char)
+     */
+    public static int rightAlignTrim(String s, int width, char pad, char[] out, int offset) {
+        checkPositive(width, "width");
+        checkFits(out, offset, width);
+        int length = Math.min(s.length(), width);
+        s.getChars(0, length, out, offset);
+        Arrays.fill(out, offset + length, offset + width, pad);
+        return offset + width;
+    }
+
+    /**
+     * Returns a string with the text padded to the specified width.
+     * The padding is added to the left.
+     * If the text is longer than the specified width, the text is trimmed from the
+     * left. A text of the specified width is returned as it is.
+     *
+     * @param s     the text to pad
+     * @param width the width of the text
+     * @param pad   the padding character
+     * @return the padded text
+     * @throws IllegalArgumentException if the width is less than 1
+     */
+    public static String leftAlignTrim(String s, int width, char pad) {
+        checkPositive(width, "width");
+        if (s.length() >= width) {
+            return s.substring(s.length() - width);
+        }
+        if (s.isEmpty()) {
+            return PadTable.run(pad, width);
+        }
+        return leftAlignTrim(s, width, pad, new StringBuilder(width)).toString();
+    }
+
+    /**
+     * Appends the text padded to the specified width.
+     * The padding is added to the left.
+     * If the text is longer than the specified width, the text is trimmed from the
+     * left.
+     *
+     * @param s     the text to pad
+     * @param width the width of the text
+     * @param pad   the padding character
+     * @param out   the builder to append the text to
+     * @return the builder
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #leftAlignTrim(String, int, char)
+     */
+    public static StringBuilder leftAlignTrim(String s, int width, char pad, StringBuilder out) {
+        checkPositive(width, "width");
+        if (s.length() > width) {
+            return out.append(s, s.length() - width, s.length());
+        }
+        PadTable.append(out, pad, width - s.length());
+        return out.append(s);
+    }
+
+    /**
+     * Writes the text padded to the specified width into the array.
+     * The padding is added to the left.
+     * If the text is longer than the specified width, the text is trimmed from the
+     * left.
+     *
+     * @param s      the text to pad
+     * @param width  the width of the text
+     * @param pad    the padding character
+     * @param out    the array to write the text to
+     * @param offset the position in the array to write the text at
+     * @return the position in the array after the text
+     * @throws IllegalArgumentException  if the width is less than 1
+     * @throws IndexOutOfBoundsException if the text does not fit into the array
+     * @see #leftAlignTrim(String, int, char)
+     */
+    public static int leftAlignTrim(String s, int width, char pad, char[] out, int offset) {
+        checkPositive(width, "width");
+        checkFits(out, offset, width);
+        int length = Math.min(s.length(), width);
+        Arrays.fill(out, offset, offset + width - length, pad);
+        s.getChars(s.length() - length, s.length(), out, offset + width - length);
+        return offset + width;
+    }
+
+    /**
+     * Centers and trims every cell to the specified width, as
+     * {@link #centerTrim(String, int, char)} does, into a single array: cell
+     * {@code i} occupies the characters from {@code i * width} to
+     * {@code (i + 1) * width}. {@code null} cells are empty.
+     *
+     * @param cells the cells to center and trim
+     * @param width the width of a cell
+     * @param pad   the padding character
+     * @return the formatted cells
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #centerTrimAll(List, int, char, char[], int)
+     */
+    public static char[] centerTrimAll(List<? extends CharSequence> cells, int width, char pad) {
+        checkPositive(width, "width");
+        char[] out = new char[Math.multiplyExact(cells.size(), width)];
+        trimAll(cells, width, pad, Horizontal.CENTER, out, 0);
+        return out;
+    }
+
+    /**
+     * Centers and trims every cell to the specified width into the array, one cell
+     * after another: cell {@code i} occupies the characters from
+     * {@code offset + i * width}. {@code null} cells are empty.
+     *
+     * @param cells  the cells to center and trim
+     * @param width  the width of a cell
+     * @param pad    the padding character
+     * @param out    the array to write the cells to
+     * @param offset the position in the array to write the first cell at
+     * @return the position in the array after the last cell
+     * @throws IllegalArgumentException  if the width is less than 1
+     * @throws IndexOutOfBoundsException if the cells do not fit into the array
+     * @see #centerTrim(String, int, char, char[], int)
+     */
+    public static int centerTrimAll(List<? extends CharSequence> cells, int width, char pad, char[] out,
+            int offset) {
+        checkPositive(width, "width");
+        checkFits(out, offset, Math.multiplyExact(cells.size(), width));
+        return trimAll(cells, width, pad, Horizontal.CENTER, out, offset);
+    }
+
+    /**
+     * Pads and trims every cell to the specified width, as
+     * {@link #rightAlignTrim(String, int, char)} does, into a single array: cell
+     * {@code i} occupies the characters from {@code i * width} to
+     * {@code (i + 1) * width}. {@code null} cells are empty.
+     *
+     * @param cells the cells to pad
+     * @param width the width of a cell
+     * @param pad   the padding character
+     * @return the formatted cells
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #rightAlignTrimAll(List, int, char, char[], int)
+     */
+    public static char[] rightAlignTrimAll(List<? extends CharSequence> cells, int width, char pad) {
+        checkPositive(width, "width");
+        char[] out = new char[Math.multiplyExact(cells.size(), width)];
+        trimAll(cells, width, pad, Horizontal.LEFT, out, 0);
+        return out;
+    }
+
+    /**
+     * Pads and trims every cell to the specified width into the array, one cell
+     * after another: cell {@code i} occupies the characters from
+     * {@code offset + i * width}. {@code null} cells are empty.
+     *
+     * @param cells  the cells to pad
+     * @param width  the width of a cell
+     * @param pad    the padding character
+     * @param out    the array to write the cells to
+     * @param offset the position in the array to write the first cell at
+     * @return the position in the array after the last cell
+     * @throws IllegalArgumentException  if the width is less than 1
+     * @throws IndexOutOfBoundsException if the cells do not fit into the array
+     * @see #rightAlignTrim(String, int, char, char[], int)
+     */
+    public static int rightAlignTrimAll(List<? extends CharSequence> cells, int width, char pad, char[] out,
+            int offset) {
+        checkPositive(width, "width");
+        checkFits(out, offset, Math.multiplyExact(cells.size(), width));
+        return trimAll(cells, width, pad, Horizontal.LEFT, out, offset);
+    }
+
+    /**
+     * Pads and trims every cell to the specified width from the left, as
+     * {@link #leftAlignTrim(String, int, char)} does, into a single array: cell
+     * {@code i} occupies the characters from {@code i * width} to
+     * {@code (i + 1) * width}. {@code null} cells are empty.
+     *
+     * @param cells the cells to pad
+     * @param width the width of a cell
+     * @param pad   the padding character
+     * @return the formatted cells
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #leftAlignTrimAll(List, int, char, char[], int)
+     */
+    public static char[] leftAlignTrimAll(List<? extends CharSequence> cells, int width, char pad) {
+        checkPositive(width, "width");
+        char[] out = new char[Math.multiplyExact(cells.size(), width)];
+        trimAll(cells, width, pad, Horizontal.RIGHT, out, 0);
+        return out;
+    }
+
+    /**
+     * Pads and trims every cell to the specified width from the left into the
+     * array, one cell after another: cell {@code i} occupies the characters from
+     * {@code offset + i * width}. {@code null} cells are empty.
+     *
+     * @param cells  the cells to pad
+     * @param width  the width of a cell
+     * @param pad    the padding character
+     * @param out    the array to write the cells to
+     * @param offset the position in the array to write the first cell at
+     * @return the position in the array after the last cell
+     * @throws IllegalArgumentException  if the width is less than 1
+     * @throws IndexOutOfBoundsException if the cells do not fit into the array
+     * @see #leftAlignTrim(String, int, char, char[], int)
+     */
+    public static int leftAlignTrimAll(List<? extends CharSequence> cells, int width, char pad, char[] out,
+            int offset) {
+        checkPositive(width, "width");
+        checkFits(out, offset, Math.multiplyExact(cells.size(), width));
+        return trimAll(cells, width, pad, Horizontal.RIGHT, out, offset);
+    }
+
+    // the arguments are checked, the cells are written without further checks
+    private static int trimAll(List<? extends CharSequence> cells, int width, char pad, Horizontal horizontal,
+            char[] out, int offset) {
+        for (CharSequence cell : cells) {
+            int length = cell == null ? 0 : cell.length();
+            int shown = Math.min(length, width);
+            int from;
+            int at;
+            switch (horizontal) {
+                case CENTER:
+                    from = 0;
+                    at = offset + (width - shown) / 2;
+                    break;
+                case RIGHT:
+                    from = length - shown;
+                    at = offset + width - shown;
+                    break;
+                default:
+                    from = 0;
+                    at = offset;
+                    break;
+            }
+            Arrays.fill(out, offset, at, pad);
+            if (shown > 0) {
+                getChars(cell, from, from + shown, out, at);
+            }
+            Arrays.fill(out, at + shown, offset + width, pad);
+            offset += width;
+        }
+        return offset;
+    }
+
+    private static void getChars(CharSequence s, int from, int to, char[] out, int at) {
+        if (s instanceof String) {
+            ((String) s).getChars(from, to, out, at);
+        } else if (s instanceof StringBuilder) {
+            ((StringBuilder) s).getChars(from, to, out, at);
+        } else {
+            for (int i = from; i < to; i++) {
+                out[at++] = s.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * Returns a string with the text centered and trimmed to the specified width,
+     * measured as specified. A character occupying two columns that does not fit
+     * into the width is replaced with padding.
+     *
+     * @param s       the text to center and trim
+     * @param width   the width of the text
+     * @param pad     the padding character
+     * @param measure how to measure the width of the text
+     * @return the centered and trimmed text
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #centerTrim(String, int, char)
+     */
+    public static String centerTrim(String s, int width, char pad, Measure measure) {
+        if (measure == Measure.CHARS) {
+            return centerTrim(s, width, pad);
+        }
+        checkPositive(width, "width");
+        int textWidth = DisplayWidth.of(s);
+        StringBuilder sb = new StringBuilder(width);
+        if (textWidth >= width) {
+            int end = DisplayWidth.fit(s, 0, width);
+            sb.append(s, 0, end);
+            PadTable.append(sb, pad, width - DisplayWidth.of(s, 0, end));
+        } else {
+            int left = (width - textWidth) / 2;
+            PadTable.append(sb, pad, left);
+            sb.append(s);
+            PadTable.append(sb, pad, width - textWidth - left);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a string with the text padded to the specified width, measured as
+     * specified. The padding is added to the right.
+     * If the text is wider than the specified width, the text is trimmed.
+     *
+     * @param s       the text to pad
+     * @param width   the width of the text
+     * @param pad     the padding character
+     * @param measure how to measure the width of the text
+     * @return the padded text
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #rightAlignTrim(String, int, char)
+     */
+    public static String rightAlignTrim(String s, int width, char pad, Measure measure) {
+        if (measure == Measure.CHARS) {
+            return rightAlignTrim(s, width, pad);
+        }
+        checkPositive(width, "width");
+        int end = DisplayWidth.fit(s, 0, width);
+        StringBuilder sb = new StringBuilder(width);
+        sb.append(s, 0, end);
+        PadTable.append(sb, pad, width - DisplayWidth.of(s, 0, end));
+        return sb.toString();
+    }
+
+    /**
+     * Returns a string with the text padded to the specified width, measured as
+     * specified. The padding is added to the left.
+     * If the text is wider than the specified width, the text is trimmed from the
+     * left.
+     *
+     * @param s       the text to pad
+     * @param width   the width of the text
+     * @param pad     the padding character
+     * @param measure how to measure the width of the text
+     * @return the padded text
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #leftAlignTrim(String, int, char)
+     */
+    public static String leftAlignTrim(String s, int width, char pad, Measure measure) {
+        if (measure == Measure.CHARS) {
+            return leftAlignTrim(s, width, pad);
+        }
+        checkPositive(width, "width");
+        int start = DisplayWidth.fitFromEnd(s, width);
+        StringBuilder sb = new StringBuilder(width);
+        PadTable.append(sb, pad, width - DisplayWidth.of(s, start, s.length()));
+        sb.append(s, start, s.length());
+        return sb.toString();
+    }
+
+    /**
+     * Returns a string with the text justified to the specified width. The gaps
+     * between the words, the runs of the padding character, are widened evenly,
+     * the first gaps by one more character if the extra space does not divide
+     * evenly. A text without gaps is padded to the right, a text wider than the
+     * specified width is trimmed.
      *
-     * @param lines list of strings
-     * @return string with line separators
+     * @param s     the text to justify
+     * @param width the width of the text
+     * @param pad   the padding character
+     * @return the justified text
+     * @throws IllegalArgumentException if the width is less than 1
      */
-    public static String linesToString(List<String> lines) {
-        return String.join(Meta.LINES_SEPARATOR, lines);
+    public static String justify(String s, int width, char pad) {
+        checkPositive(width, "width");
+        return justify(s, width, pad, new StringBuilder(width)).toString();
     }
 
     /**
-     * Returns a lines with the text wrapped to the specified line width.
-     * if a single word exceeds line width, it doesn't wrap.
-     * if a text contains line separators, it starts a new line.
+     * Appends the text justified to the specified width.
      *
-     * @param text  the text to wrap
+     * @param s     the text to justify
      * @param width the width of the text
-     * @param space the padding character
-     * @return the wrapped text
-     * @throws IllegalArgumentException if the width is less than or equal to 0.
+     * @param pad   the padding character
+     * @param out   the builder to append the text to
+     * @return the builder
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #justify(String, int, char)
      */
-    public static List<String> textWrap(String text, int width, char space) {
-        // split the string into words by delimiters
-        String[] sourceLines = text.split(Meta.LINE_DELIMITER_REGEX);
-        List<String> result = new ArrayList<>();
-
-        for (String s1 : sourceLines) {
-            String t = s1.trim();
-            String[] words = t.split(Meta.WORDS_DELIMITER);
-            // create a new string builder
-
-            // create a new line
-            StringBuilder line = new StringBuilder();
-            // iterate over the words
-            for (String word : words) {
-                if (line.length() == 0) {
-                    // if the line is empty, add the word
-                    line = new StringBuilder(word);
-                } else if (1 + word.length() + line.length() >= width) {
-                    // if the line is too long, add the line to the string builder and create a new
-                    // line
-                    result.add(line.toString());
-                    line = new StringBuilder(word);
-                } else {
-                    // if the line is not too long, add the word to the line
-                    line.append(space).append(word);
-                }
+    public static StringBuilder justify(String s, int width, char pad, StringBuilder out) {
+        checkPositive(width, "width");
+        int length = s.length();
+        int first = 0;
+        while (first < length && s.charAt(first) == pad) {
+            first++;
+        }
+        int last = length;
+        while (last > first && s.charAt(last - 1) == pad) {
+            last--;
+        }
+        int gaps = 0;
+        for (int i = first + 1; i < last; i++) {
+            if (s.charAt(i) != pad && s.charAt(i - 1) == pad) {
+                gaps++;
             }
-            result.add(line.toString());
         }
-        return result;
+        if (length >= width || gaps == 0) {
+            return rightAlignTrim(s, width, pad, out);
+        }
+        // every gap is widened by the same amount, the first ones by one more
+        int extra = width - length;
+        int each = extra / gaps;
+        int more = extra % gaps;
+        out.append(s, 0, first);
+        for (int gap = 0, i = first; i < last; i++) {
+            char c = s.charAt(i);
+            out.append(c);
+            if (c == pad && s.charAt(i + 1) != pad) {
+                PadTable.append(out, pad, gap++ < more ? each + 1 : each);
+            }
+        }
+        return out.append(s, last, length);
     }
 
     /**
-     * Returns a string with the text centered and trimmed to the specified width.
+     * Returns the styled text centered and trimmed to the specified width. The
+     * padding is in the default style.
      *
      * @param s     the text to center and trim
      * @param width the width of the text
      * @param pad   the padding character
      * @return the centered and trimmed text
      * @throws IllegalArgumentException if the width is less than 1
+     * @see #centerTrim(String, int, char)
      */
-    public static String centerTrim(String s, int width, char pad) {
+    public static StyledText centerTrim(StyledText s, int width, char pad) {
         checkPositive(width, "width");
-        String result;
         if (s.length() >= width) {
-            result = s.substring(0, width);
-        } else {
-            int left = (width - s.length()) / 2;
-            int right = width - s.length() - left;
-            String padStr = String.valueOf(pad);
-            result = padStr.repeat(left) + s + padStr.repeat(right);
+            return s.subSequence(0, width);
         }
-        return result;
+        int left = (width - s.length()) / 2;
+        return StyledText.builder().append(pad, left, Style.NONE).append(s)
+                .append(pad, width - s.length() - left, Style.NONE).build();
     }
 
     /**
-     * Returns a string with the text padded to the specified width.
-     * The padding is added to the right.
-     * If the text is longer than the specified width, the text is trimmed.
+     * Returns the styled text padded to the specified width. The padding is added
+     * to the right, in the default style.
      *
      * @param s     the text to pad
      * @param width the width of the text
      * @param pad   the padding character
      * @return the padded text
      * @throws IllegalArgumentException if the width is less than 1
+     * @see #rightAlignTrim(String, int, char)
      */
-    public static String rightAlignTrim(String s, int width, char pad) {
+    public static StyledText rightAlignTrim(StyledText s, int width, char pad) {
         checkPositive(width, "width");
-        String result;
-        if (s.length() > width) {
-            result = s.substring(0, width);
-        } else {
-            result = s + String.valueOf(pad).repeat(width - s.length());
+        if (s.length() >= width) {
+            return s.subSequence(0, width);
         }
-        return result;
+        return StyledText.builder().append(s).append(pad, width - s.length(), Style.NONE).build();
     }
 
     /**
-     * Returns a string with the text padded to the specified width.
-     * The padding is added to the left.
-     * If the text is longer than the specified width, the text is trimmed from the
-     * left.
+     * Returns the styled text padded to the specified width. The padding is added
+     * to the left, in the default style.
      *
      * @param s     the text to pad
      * @param width the width of the text
      * @param pad   the padding character
      * @return the padded text
      * @throws IllegalArgumentException if the width is less than 1
+     * @see #leftAlignTrim(String, int, char)
      */
-    public static String leftAlignTrim(String s, int width, char pad) {
+    public static StyledText leftAlignTrim(StyledText s, int width, char pad) {
         checkPositive(width, "width");
-        String result;
-        if (s.length() > width) {
-            result = s.substring(s.length() - width);
-        } else {
-            result = String.valueOf(pad).repeat(width - s.length()) + s;
+        if (s.length() >= width) {
+            return s.subSequence(s.length() - width, s.length());
         }
-        return result;
+        return StyledText.builder().append(pad, width - s.length(), Style.NONE).append(s).build();
     }
 
     /**
@@ -147,39 +972,162 @@ public final class LineFormatter {
      * @throws IllegalArgumentException if the width or height is less than 1
      */
     public static List<String> textRectangle(int width, int height, String text, Border border, char pad) {
+        return textRectangle(width, height, text, border, pad, Align.CENTER_MIDDLE);
+    }
+
+    /**
+     * Creates a rectangle with the specified dimensions, into which the text is
+     * fitted with the specified alignment.
+     *
+     * @param width  the width of the rectangle
+     * @param height the height of the rectangle
+     * @param text   the text to fit into the rectangle
+     * @param border the border
+     * @param pad    the padding character
+     * @param align  the alignment of the text
+     * @return the rectangle
+     * @throws IllegalArgumentException if the width or height is less than 1
+     * @see #textRectangle(int, int, String, Border, char)
+     */
+    public static List<String> textRectangle(int width, int height, String text, Border border, char pad,
+            Align align) {
         checkPositive(width, "width");
         checkPositive(height, "height");
-        int maxTextWidth = width - (border.left ? 1 : 0) - (border.right ? 1 : 0);
-        List<String> lines = textWrap(text, maxTextWidth, pad);
         List<String> result = new ArrayList<>();
-        int textHeight = lines.size();
-        int textTop = (height - textHeight) / 2;
-        StringBuilder sb = new StringBuilder();
-        for (int j = 0, i = 0; i < height; i++) {
-            if ((i == 0 && border.top)) {
-                result.add(horizontalLine(width, border));
-            } else if (i == height - 1 && border.bottom) {
-                result.add(horizontalLine(width, border));
+        appendRectangle(width, height, text, border, pad, align, new StringBuilder(width), result);
+        return result;
+    }
+
+    /**
+     * Creates a rectangle with the specified dimensions, into which the lines,
+     * already wrapped, are fitted with the specified alignment. The lines are not
+     * wrapped again: a line longer than the room between the left and right
+     * borders is trimmed as it is aligned. Without left and right borders, the
+     * lines that fit exactly are the rows of the rectangle themselves.
+     *
+     * @param width  the width of the rectangle
+     * @param height the height of the rectangle
+     * @param lines  the lines to fit into the rectangle
+     * @param border the border
+     * @param pad    the padding character
+     * @param align  the alignment of the lines
+     * @return the rectangle
+     * @throws IllegalArgumentException if the width or height is less than 1
+     * @see #textRectangle(int, int, String, Border, char, Align)
+     */
+    public static List<String> textRectangle(int width, int height, List<String> lines, Border border, char pad,
+            Align align) {
+        checkPositive(width, "width");
+        checkPositive(height, "height");
+        List<String> result = new ArrayList<>(height);
+        appendRectangleLines(width, height, lines, border, pad, align, new StringBuilder(width), result);
+        return result;
+    }
+
+    /**
+     * Appends a rectangle with the specified dimensions, into which the text is
+     * fitted. Every row of the rectangle is followed by a line separator.
+     *
+     * @param width  the width of the rectangle
+     * @param height the height of the rectangle
+     * @param text   the text to fit into the rectangle
+     * @param border the border
+     * @param pad    the padding character
+     * @param out    the builder to append the rectangle to
+     * @return the builder
+     * @throws IllegalArgumentException if the width or height is less than 1
+     * @see #textRectangle(int, int, String, Border, char)
+     */
+    public static StringBuilder textRectangle(int width, int height, String text, Border border, char pad,
+            StringBuilder out) {
+        checkPositive(width, "width");
+        checkPositive(height, "height");
+        appendRectangle(width, height, text, border, pad, Align.CENTER_MIDDLE, out, null);
+        return out;
+    }
+
+    /**
+     * Appends the rows of the rectangle to the builder. If the list of rows is
+     * given, every row is moved from the builder to the list, otherwise the rows
+     * are separated by line separators.
+     */
+    private static void appendRectangle(int width, int height, String text, Border border, char pad, Align align,
+            StringBuilder sb, List<String> rows) {
+        int maxTextWidth = width - (border.left ? 1 : 0) - (border.right ? 1 : 0);
+        appendRectangleLines(width, height, textWrap(text, maxTextWidth, pad), border, pad, align, sb, rows);
+    }
+
+    /**
+     * Appends the rows of the rectangle of the wrapped lines, as
+     * {@link #appendRectangle} does. Without left and right borders, the rows of
+     * the list that need no change are the lines and the shared paddings and
+     * borders themselves.
+     */
+    private static void appendRectangleLines(int width, int height, List<String> lines, Border border, char pad,
+            Align align, StringBuilder sb, List<String> rows) {
+        int maxTextWidth = width - (border.left ? 1 : 0) - (border.right ? 1 : 0);
+        boolean reuse = rows != null && !border.left && !border.right;
+        int textTop = textTop(height, lines.size(), border, align);
+        int first = firstLine(textTop, border, align);
+        for (int j = first, i = 0; i < height; i++) {
+            if ((i == 0 && border.top) || (i == height - 1 && border.bottom)) {
+                if (reuse) {
+                    rows.add(horizontalLine(width, border));
+                    continue;
+                }
+                horizontalLine(width, border, sb);
+            } else if (reuse && (i < textTop || j >= lines.size())) {
+                rows.add(PadTable.run(pad, width));
+                continue;
+            } else if (reuse && lines.get(j).length() == width) {
+                rows.add(lines.get(j++));
+                continue;
             } else {
                 if (border.left && width > 0) {
-                    sb.append("|");
+                    sb.append('|');
                 }
                 if (maxTextWidth > 0) {
                     if (i >= textTop && j < lines.size()) {
-                        sb.append(centerTrim(lines.get(j), maxTextWidth, pad));
+                        appendAligned(lines, j, maxTextWidth, pad, align.horizontal, sb);
                         j++;
                     } else {
-                        sb.append(String.valueOf(pad).repeat(maxTextWidth));
+                        PadTable.append(sb, pad, maxTextWidth);
                     }
                 }
                 if (border.right && width > 1) {
-                    sb.append("|");
+                    sb.append('|');
                 }
-                result.add(sb.toString());
-                sb = new StringBuilder();
+            }
+            if (rows != null) {
+                rows.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(Meta.LINES_SEPARATOR);
             }
         }
-        return result;
+    }
+
+    /**
+     * Returns the row of a rectangle at which its text starts; the text is shown
+     * in the rows at and below it that are not borders.
+     */
+    static int textTop(int height, int textHeight, Border border, Align align) {
+        switch (align.vertical) {
+            case TOP:
+                return 0;
+            case BOTTOM:
+                return height - (border.bottom ? 1 : 0) - textHeight;
+            default:
+                return (height - textHeight) / 2;
+        }
+    }
+
+    /**
+     * Returns the first line of the text shown in a rectangle. The bottom aligned
+     * text higher than the rectangle shows its last lines.
+     */
+    static int firstLine(int textTop, Border border, Align align) {
+        return align.vertical == Vertical.BOTTOM ? Math.max(0, (border.top ? 1 : 0) - textTop) : 0;
     }
 
     /**
@@ -212,7 +1160,8 @@ public final class LineFormatter {
                 resizeRight(width, height, lines, result, 0, pad);
                 break;
             default:
-                throw new UnsupportedOperationException("Align " + align + " not supported");
+                resizeAligned(width, height, lines, result, align, pad);
+                break;
         }
         return result;
     }
@@ -248,6 +1197,31 @@ public final class LineFormatter {
         return result;
     }
 
+    /**
+     * Joins two blocks of lines horizontally, without building the lines.
+     * The lines are only built when the resulting block is rendered.
+     *
+     * @param left  left lines
+     * @param right right lines
+     * @return the joined lines
+     * @see #joinHorizontal(List, List)
+     */
+    public static Block joinHorizontal(Block left, Block right) {
+        return new Block.Horizontal(left, right);
+    }
+
+    /**
+     * Joins two blocks of lines vertically, without copying the lines.
+     *
+     * @param top    the top lines
+     * @param bottom the bottom lines
+     * @return the joined lines
+     * @see #joinVertical(List, List)
+     */
+    public static Block joinVertical(Block top, Block bottom) {
+        return new Block.Vertical(top, bottom);
+    }
+
     /**
      * Creates a horizontal line
      *
@@ -257,19 +1231,119 @@ public final class LineFormatter {
      * @throws IllegalArgumentException if the width is less than 1
      */
     public static String horizontalLine(int width, Border border) {
+        checkPositive(width, "width");
+        if (!border.left && !border.right) {
+            return PadTable.run('-', width);
+        }
+        return horizontalLine(width, border, new StringBuilder(width)).toString();
+    }
+
+    /**
+     * Appends a horizontal line
+     *
+     * @param width  the length of the line
+     * @param border the border
+     * @param out    the builder to append the line to
+     * @return the builder
+     * @throws IllegalArgumentException if the width is less than 1
+     * @see #horizontalLine(int, Border)
+     */
+    public static StringBuilder horizontalLine(int width, Border border, StringBuilder out) {
         checkPositive(width, "width");
         int textWidth = width - (border.left ? 1 : 0) - (border.right ? 1 : 0);
-        StringBuilder sb = new StringBuilder();
         if (border.left && width > 0) {
-            sb.append("+");
+            out.append('+');
         }
         if (textWidth > 0) {
-            sb.append("-".repeat(textWidth));
+            PadTable.append(out, '-', textWidth);
         }
         if (border.right && width > 1) {
-            sb.append("+");
+            out.append('+');
+        }
+        return out;
+    }
+
+    /**
+     * Writes a horizontal line into the array.
+     *
+     * @param width  the length of the line
+     * @param border the border
+     * @param out    the array to write the line to
+     * @param offset the position in the array to write the line at
+     * @return the position in the array after the line
+     * @throws IllegalArgumentException  if the width is less than 1
+     * @throws IndexOutOfBoundsException if the line does not fit into the array
+     * @see #horizontalLine(int, Border)
+     */
+    public static int horizontalLine(int width, Border border, char[] out, int offset) {
+        checkPositive(width, "width");
+        int textWidth = Math.max(width - (border.left ? 1 : 0) - (border.right ? 1 : 0), 0);
+        int length = textWidth + (border.left && width > 0 ? 1 : 0) + (border.right && width > 1 ? 1 : 0);
+        checkFits(out, offset, length);
+        int i = offset;
+        if (border.left && width > 0) {
+            out[i++] = '+';
+        }
+        Arrays.fill(out, i, i + textWidth, '-');
+        i += textWidth;
+        if (border.right && width > 1) {
+            out[i++] = '+';
+        }
+        return i;
+    }
+
+    static void resizeAligned(int width, int height, List<String> lines, List<String> result, Align align,
+            char pad) {
+        int offset;
+        switch (align.vertical) {
+            case TOP:
+                offset = 0;
+                break;
+            case BOTTOM:
+                offset = height - lines.size();
+                break;
+            default:
+                offset = (height - lines.size()) / 2;
+                break;
+        }
+        StringBuilder sb = new StringBuilder(width);
+        for (int i = 0; i < height; i++) {
+            int j = i - offset;
+            if (j >= 0 && j < lines.size()) {
+                String line = lines.get(j);
+                if (line.length() == width) {
+                    // aligned in any way, the line stays as it is
+                    result.add(line);
+                    continue;
+                }
+                sb.setLength(0);
+                result.add(appendAligned(lines, j, width, pad, align.horizontal, sb).toString());
+            } else {
+                result.add(PadTable.run(pad, width));
+            }
+        }
+    }
+
+    /**
+     * Appends the line of the lines aligned to the width. The last line and the
+     * lines followed by an empty line end a paragraph, so they are not justified.
+     */
+    static StringBuilder appendAligned(List<String> lines, int index, int width, char pad,
+            Horizontal horizontal, StringBuilder sb) {
+        String line = lines.get(index);
+        switch (horizontal) {
+            case CENTER:
+                return centerTrim(line, width, pad, sb);
+            case RIGHT:
+                return leftAlignTrim(line, width, pad, sb);
+            case JUSTIFY:
+                if (index + 1 < lines.size() && !lines.get(index + 1).isEmpty()) {
+                    return justify(line, width, pad, sb);
+                }
+                return rightAlignTrim(line, width, pad, sb);
+            default:
+                return rightAlignTrim(line, width, pad, sb);
         }
-        return sb.toString();
     }
 
     static void resizeLeft(int width, int height, List<String> lines, List<String> result, int offset, char pad) {
@@ -278,7 +1352,7 @@ public final class LineFormatter {
             if (j >= 0 && j < lines.size()) {
                 result.add(rightAlignTrim(lines.get(j), width, pad));
             } else {
-                result.add(String.valueOf(pad).repeat(width));
+                result.add(PadTable.run(pad, width));
             }
         }
     }
@@ -289,17 +1363,75 @@ public final class LineFormatter {
             if (j >= 0 && j < lines.size()) {
                 result.add(leftAlignTrim(lines.get(j), width, pad));
             } else {
-                result.add(String.valueOf(pad).repeat(width));
+                result.add(PadTable.run(pad, width));
             }
         }
     }
 
+    private static void checkFits(char[] out, int offset, int length) {
+        if (offset < 0 || offset > out.length - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + " and length " + length
+                    + " are out of bounds for length " + out.length);
+        }
+    }
+
     private static void checkPositive(int value, String argument) {
         if (value < 0) {
             throw new IllegalArgumentException(argument + " must be positive");
         }
     }
 
+    /**
+     * Wraps a range of the text, splitting it in two at a line separator while it
+     * is longer than the threshold.
+     */
+    private static final class WrapTask extends RecursiveTask<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        private final int from;
+        private final int to;
+        private final int width;
+        private final char space;
+        private final int threshold;
+
+        WrapTask(String text, int from, int to, int width, char space, int threshold) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.space = space;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<String> compute() {
+            int split = to - from > threshold ? findSplit() : -1;
+            if (split < 0) {
+                List<String> result = new ArrayList<>();
+                wrapLines(text, from, to, width, space, result);
+                return result;
+            }
+            WrapTask left = new WrapTask(text, from, split, width, space, threshold);
+            WrapTask right = new WrapTask(text, split + 1, to, width, space, threshold);
+            left.fork();
+            List<String> rightResult = right.compute();
+            List<String> result = left.join();
+            result.addAll(rightResult);
+            return result;
+        }
+
+        private int findSplit() {
+            int middle = from + (to - from) / 2;
+            int split = text.indexOf('\n', middle);
+            if (split < 0 || split >= to) {
+                split = text.lastIndexOf('\n', middle);
+            }
+            return split >= from ? split : -1;
+        }
+    }
+
     /**
      * Border location.
      */
@@ -366,6 +1498,53 @@ public final class LineFormatter {
         }
     }
 
+    /**
+     * How the width of a text is measured.
+     */
+    public enum Measure {
+        /**
+         * Every char is one column wide.
+         */
+        CHARS,
+        /**
+         * Terminal columns, see {@link DisplayWidth}.
+         */
+        DISPLAY
+    }
+
+    /**
+     * How the lines are broken when a text is wrapped.
+     */
+    public enum Wrap {
+        /**
+         * Puts as many words on a line as fit, line by line.
+         */
+        GREEDY,
+        /**
+         * Breaks the lines so that they are as even as possible.
+         */
+        OPTIMAL
+    }
+
+    /**
+     * How the words that do not fit into the width are wrapped.
+     */
+    public enum Overflow {
+        /**
+         * The word is kept whole on a line of its own.
+         */
+        KEEP,
+        /**
+         * The word is split over several lines.
+         */
+        SPLIT,
+        /**
+         * The word is split over several lines, every piece but the last followed by
+         * a hyphen.
+         */
+        HYPHENATE
+    }
+
     /**
      * Resize align.
      */
@@ -373,18 +1552,72 @@ public final class LineFormatter {
         /**
          * Align to a left bottom corner.
          */
-        LEFT_BOTTOM,
+        LEFT_BOTTOM(Horizontal.LEFT, Vertical.BOTTOM),
         /**
          * Align to a left top corner.
          */
-        LEFT_TOP,
+        LEFT_TOP(Horizontal.LEFT, Vertical.TOP),
         /**
          * Align to a right bottom corner.
          */
-        RIGHT_BOTTOM,
+        RIGHT_BOTTOM(Horizontal.RIGHT, Vertical.BOTTOM),
         /**
          * Align to a right top corner.
          */
-        RIGHT_TOP
+        RIGHT_TOP(Horizontal.RIGHT, Vertical.TOP),
+        /**
+         * Align to the middle of the left side.
+         */
+        LEFT_MIDDLE(Horizontal.LEFT, Vertical.MIDDLE),
+        /**
+         * Align to the middle of the right side.
+         */
+        RIGHT_MIDDLE(Horizontal.RIGHT, Vertical.MIDDLE),
+        /**
+         * Align to the middle of the top side.
+         */
+        CENTER_TOP(Horizontal.CENTER, Vertical.TOP),
+        /**
+         * Align to the center.
+         */
+        CENTER_MIDDLE(Horizontal.CENTER, Vertical.MIDDLE),
+        /**
+         * Align to the middle of the bottom side.
+         */
+        CENTER_BOTTOM(Horizontal.CENTER, Vertical.BOTTOM),
+        /**
+         * Justify, and align to the top.
+         */
+        JUSTIFY_TOP(Horizontal.JUSTIFY, Vertical.TOP),
+        /**
+         * Justify, and align to the middle.
+         */
+        JUSTIFY_MIDDLE(Horizontal.JUSTIFY, Vertical.MIDDLE),
+        /**
+         * Justify, and align to the bottom.
+         */
+        JUSTIFY_BOTTOM(Horizontal.JUSTIFY, Vertical.BOTTOM);
+
+        final Horizontal horizontal;
+        final Vertical vertical;
+
+        Align(Horizontal horizontal, Vertical vertical) {
+            this.horizontal = horizontal;
+            this.vertical = vertical;
+        }
+    }
+
+    /**
+     * Horizontal part of the {@link Align}.
+     */
+    enum Horizontal {
+        LEFT, CENTER, RIGHT, JUSTIFY
+    }
+
+    /**
+     * Vertical part of the {@link Align}.
+     */
+    enum Vertical {
+        TOP, MIDDLE, BOTTOM
     }
 }
@@ -0,0 +1,278 @@
+package pp.muza.formatter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Canvas of one byte per cell, stored outside of the heap, for canvases too
+ * large for an {@link AsciiCanvas}.
+ * <p>
+ * The cells hold Latin-1 characters; other characters are drawn as {@code ?}.
+ * The rows are stored the way they are written out, every row followed by a
+ * line separator, in direct buffers or in a file mapped into memory. Writing
+ * the canvas out is a gather write of the buffers, or for a mapped file a
+ * transfer from the file, without building a string. The buffers hold whole
+ * rows, up to 1 GiB each.
+ *
+ * @author 47niemand
+ */
+public final class OffHeapAsciiCanvas implements Closeable {
+
+    private static final int MAX_CHUNK = 1 << 30;
+    private static final byte UNMAPPABLE = '?';
+
+    private final int width;
+    private final int height;
+    // the length of a row and its line separator
+    private final int stride;
+    private final int rowsPerChunk;
+    private final ByteBuffer[] chunks;
+    // the mapped file, null for direct buffers
+    private final FileChannel file;
+    private final byte[] scratch;
+
+    private OffHeapAsciiCanvas(int width, int height, FileChannel file) throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("width and height must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.file = file;
+        this.stride = Math.addExact(width, Meta.LINES_SEPARATOR.length());
+        this.rowsPerChunk = Math.max(1, MAX_CHUNK / stride);
+        this.chunks = new ByteBuffer[(height + rowsPerChunk - 1) / rowsPerChunk];
+        if (file != null) {
+            file.truncate(0);
+        }
+        for (int i = 0; i < chunks.length; i++) {
+            int size = Math.min(rowsPerChunk, height - i * rowsPerChunk) * stride;
+            chunks[i] = file == null ? ByteBuffer.allocateDirect(size)
+                    : file.map(FileChannel.MapMode.READ_WRITE, (long) i * rowsPerChunk * stride, size);
+        }
+        this.scratch = new byte[stride];
+        clear();
+    }
+
+    /**
+     * Creates a canvas in direct buffers.
+     *
+     * @param width  the width of the canvas.
+     * @param height the height of the canvas.
+     * @return the canvas.
+     * @throws IllegalArgumentException if the width or height is less than 1.
+     */
+    public static OffHeapAsciiCanvas allocate(int width, int height) {
+        try {
+            return new OffHeapAsciiCanvas(width, height, null);
+        } catch (IOException e) {
+            // direct buffers do no I/O
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a canvas in the file, which is created or replaced, mapped into
+     * memory. The content of the file is the canvas as it is written out.
+     *
+     * @param path   the file.
+     * @param width  the width of the canvas.
+     * @param height the height of the canvas.
+     * @return the canvas.
+     * @throws IOException              if an I/O error occurs.
+     * @throws IllegalArgumentException if the width or height is less than 1.
+     */
+    public static OffHeapAsciiCanvas map(Path path, int width, int height) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new OffHeapAsciiCanvas(width, height, file);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Clears the canvas.
+     *
+     * @param c the character to fill the canvas with.
+     */
+    public void clear(char c) {
+        encode(String.valueOf(c).repeat(width) + Meta.LINES_SEPARATOR, stride);
+        for (ByteBuffer chunk : chunks) {
+            for (int offset = 0; offset < chunk.capacity(); offset += stride) {
+                chunk.position(offset);
+                chunk.put(scratch, 0, stride);
+            }
+        }
+    }
+
+    /**
+     * Clears the canvas.
+     */
+    public void clear() {
+        clear(' ');
+    }
+
+    /**
+     * Draws a text at the specified position.
+     *
+     * @param left the left position of the text.
+     * @param top  the top position of the text.
+     * @param text the text to draw.
+     */
+    public void drawText(int left, int top, CharSequence text) {
+        if (top < 0 || top >= height || left < 0 || left >= width || text == null || text.length() == 0) {
+            return;
+        }
+        int length = Math.min(text.length(), width - left);
+        encode(text, length);
+        ByteBuffer chunk = chunks[top / rowsPerChunk];
+        chunk.position((top % rowsPerChunk) * stride + left);
+        chunk.put(scratch, 0, length);
+    }
+
+    /**
+     * Draws lines of text at the specified position.
+     *
+     * @param left  the left position of the text.
+     * @param top   the top position of the text.
+     * @param lines the lines of text to draw.
+     */
+    public void pasteLines(int left, int top, List<String> lines) {
+        for (int i = 0; i < lines.size() && top + i < height; i++) {
+            drawText(left, top + i, lines.get(i));
+        }
+    }
+
+    private void encode(CharSequence text, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            scratch[i] = c <= 0xFF ? (byte) c : UNMAPPABLE;
+        }
+    }
+
+    /**
+     * Returns the character at the specified position.
+     *
+     * @param left the left position.
+     * @param top  the top position.
+     * @return the character at the specified position.
+     * @throws IndexOutOfBoundsException if the position is out of bounds.
+     */
+    public char get(int left, int top) {
+        checkRange(left, width, "left");
+        checkRange(top, height, "top");
+        return (char) (chunks[top / rowsPerChunk].get((top % rowsPerChunk) * stride + left) & 0xFF);
+    }
+
+    /**
+     * Returns the row at the specified position.
+     *
+     * @param top the top position.
+     * @return the row.
+     * @throws IndexOutOfBoundsException if the position is out of bounds.
+     */
+    public String getLine(int top) {
+        checkRange(top, height, "top");
+        ByteBuffer chunk = chunks[top / rowsPerChunk];
+        chunk.position((top % rowsPerChunk) * stride);
+        chunk.get(scratch, 0, width);
+        return new String(scratch, 0, width, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void checkRange(int value, int max, String argument) {
+        if (value < 0 || value >= max) {
+            throw new IndexOutOfBoundsException(argument + " is out of bounds");
+        }
+    }
+
+    /**
+     * Writes the canvas, every row followed by a line separator. The buffers are
+     * written at once to a gathering channel, and a canvas in a mapped file is
+     * transferred from the file, which lets the system copy it without passing it
+     * through the process.
+     *
+     * @param out the channel to write the canvas to.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTo(WritableByteChannel out) throws IOException {
+        if (file != null) {
+            long size = (long) height * stride;
+            for (long position = 0; position < size;) {
+                position += file.transferTo(position, size - position, out);
+            }
+            return;
+        }
+        ByteBuffer[] sources = new ByteBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            sources[i] = chunks[i].duplicate();
+            sources[i].clear();
+        }
+        if (out instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) out;
+            for (int first = 0; first < sources.length;) {
+                gathering.write(sources, first, sources.length - first);
+                while (first < sources.length && !sources[first].hasRemaining()) {
+                    first++;
+                }
+            }
+            return;
+        }
+        for (ByteBuffer source : sources) {
+            while (source.hasRemaining()) {
+                out.write(source);
+            }
+        }
+    }
+
+    /**
+     * Writes the changes of a canvas in a mapped file to the storage device.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void force() throws IOException {
+        if (file != null) {
+            file.force(false);
+        }
+    }
+
+    /**
+     * Returns the width of the canvas.
+     *
+     * @return width of the canvas.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the canvas.
+     *
+     * @return height of the canvas.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Closes the mapped file. The memory of the canvas is released once the canvas
+     * is no longer referenced.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package pp.muza.formatter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared table of strings repeating a single character, used for paddings and
+ * horizontal borders.
+ * <p>
+ * Runs up to {@link #MAX_WIDTH} characters long are created once per character
+ * and length and then reused. The width can be changed with the
+ * {@code pp.muza.formatter.padTableWidth} system property. The table is safe to
+ * use from multiple threads: a run created concurrently by two threads is
+ * simply created twice, and strings are immutable, so they can be shared
+ * without synchronization.
+ *
+ * @author 47niemand
+ */
+final class PadTable {
+
+    static final int MAX_WIDTH = Math.max(1, Integer.getInteger("pp.muza.formatter.padTableWidth", 256));
+
+    private static final ConcurrentHashMap<Character, String[]> RUNS = new ConcurrentHashMap<>();
+
+    private PadTable() {
+    }
+
+    /**
+     * Returns a string of the character repeated the specified number of times.
+     *
+     * @param c      the character
+     * @param length the length of the string
+     * @return the string
+     */
+    static String run(char c, int length) {
+        if (length > MAX_WIDTH) {
+            return String.valueOf(c).repeat(length);
+        }
+        String[] runs = RUNS.get(c);
+        if (runs == null) {
+            runs = RUNS.computeIfAbsent(c, k -> new String[MAX_WIDTH + 1]);
+        }
+        String run = runs[length];
+        if (run == null) {
+            run = String.valueOf(c).repeat(length);
+            runs[length] = run;
+        }
+        return run;
+    }
+
+    /**
+     * Appends the character repeated the specified number of times.
+     *
+     * @param sb     the builder to append to
+     * @param c      the character
+     * @param length the number of characters, nothing is appended if it is not
+     *               positive
+     */
+    static void append(StringBuilder sb, char c, int length) {
+        while (length > MAX_WIDTH) {
+            sb.append(run(c, MAX_WIDTH));
+            length -= MAX_WIDTH;
+        }
+        if (length > 0) {
+            sb.append(run(c, length));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package pp.muza.formatter;
+
+/**
+ * Text styles packed into an {@code int}, combined with {@code |}.
+ * <p>
+ * A style holds an optional foreground and background color from the 256 color
+ * palette of the terminals (0-7 the standard colors, 8-15 their bright
+ * variants) and a set of attributes. {@link #NONE} is the default style of the
+ * terminal.
+ *
+ * <pre>
+ * int warning = Style.fg(Style.YELLOW) | Style.BOLD;
+ * </pre>
+ *
+ * @author 47niemand
+ * @see StyledText
+ */
+public final class Style {
+
+    /**
+     * The default style.
+     */
+    public static final int NONE = 0;
+    /**
+     * Bold or increased intensity.
+     */
+    public static final int BOLD = 1 << 18;
+    /**
+     * Faint or decreased intensity.
+     */
+    public static final int DIM = 1 << 19;
+    /**
+     * Italic.
+     */
+    public static final int ITALIC = 1 << 20;
+    /**
+     * Underline.
+     */
+    public static final int UNDERLINE = 1 << 21;
+    /**
+     * Swapped foreground and background colors.
+     */
+    public static final int REVERSE = 1 << 22;
+
+    /**
+     * Black color.
+     */
+    public static final int BLACK = 0;
+    /**
+     * Red color.
+     */
+    public static final int RED = 1;
+    /**
+     * Green color.
+     */
+    public static final int GREEN = 2;
+    /**
+     * Yellow color.
+     */
+    public static final int YELLOW = 3;
+    /**
+     * Blue color.
+     */
+    public static final int BLUE = 4;
+    /**
+     * Magenta color.
+     */
+    public static final int MAGENTA = 5;
+    /**
+     * Cyan color.
+     */
+    public static final int CYAN = 6;
+    /**
+     * White color.
+     */
+    public static final int WHITE = 7;
+
+    // the colors are stored plus one, so that zero is the default color
+    private static final int COLOR_BITS = 9;
+    private static final int COLOR_MASK = (1 << COLOR_BITS) - 1;
+    private static final int[] ATTRIBUTES = { BOLD, DIM, ITALIC, UNDERLINE, REVERSE };
+    private static final int[] ATTRIBUTE_CODES = { 1, 2, 3, 4, 7 };
+
+    private Style() {
+    }
+
+    /**
+     * Returns the style with the foreground color.
+     *
+     * @param color the color, from 0 to 255
+     * @return the style
+     * @throws IllegalArgumentException if the color is out of range
+     */
+    public static int fg(int color) {
+        return checkColor(color) + 1;
+    }
+
+    /**
+     * Returns the style with the background color.
+     *
+     * @param color the color, from 0 to 255
+     * @return the style
+     * @throws IllegalArgumentException if the color is out of range
+     */
+    public static int bg(int color) {
+        return (checkColor(color) + 1) << COLOR_BITS;
+    }
+
+    private static int checkColor(int color) {
+        if (color < 0 || color > 255) {
+            throw new IllegalArgumentException("color must be between 0 and 255");
+        }
+        return color;
+    }
+
+    /**
+     * Appends the ANSI escape sequence that switches the terminal from any style
+     * to the specified one.
+     *
+     * @param style the style
+     * @param out   the builder to append the sequence to
+     * @return the builder
+     */
+    public static StringBuilder appendAnsi(int style, StringBuilder out) {
+        out.append("\u001B[0");
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            if ((style & ATTRIBUTES[i]) != 0) {
+                out.append(';').append(ATTRIBUTE_CODES[i]);
+            }
+        }
+        appendColor(style & COLOR_MASK, 30, 90, 38, out);
+        appendColor((style >>> COLOR_BITS) & COLOR_MASK, 40, 100, 48, out);
+        return out.append('m');
+    }
+
+    private static void appendColor(int color, int standard, int bright, int extended, StringBuilder out) {
+        if (color == 0) {
+            return;
+        }
+        color--;
+        if (color < 8) {
+            out.append(';').append(standard + color);
+        } else if (color < 16) {
+            out.append(';').append(bright + color - 8);
+        } else {
+            out.append(';').append(extended).append(";5;").append(color);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package pp.muza.formatter;
+
+import java.util.Arrays;
+
+/**
+ * Text with {@link Style styles}, kept apart from the characters.
+ * <p>
+ * The characters are plain text, so its length is its width, and the styles are
+ * a compact array of runs, pairs of the end of the run and its style. Adjacent
+ * runs of the same style are merged when the text is built. The ANSI escape
+ * sequences are only produced by {@link #appendAnsi(StringBuilder)}, once per
+ * change of the style. Styled texts are immutable.
+ *
+ * <pre>
+ * StyledText text = StyledText.builder()
+ *         .append("error: ", Style.fg(Style.RED) | Style.BOLD)
+ *         .append("file not found", Style.NONE)
+ *         .build();
+ * </pre>
+ *
+ * @author 47niemand
+ * @see LineFormatter#textWrap(StyledText, int, char)
+ * @see AsciiCanvas#drawStyledText(int, int, StyledText)
+ */
+public final class StyledText implements CharSequence {
+
+    private static final int[] NO_RUNS = {};
+    private static final StyledText EMPTY = new StyledText("", NO_RUNS);
+
+    private final String text;
+    // {end, style} of every run, the last run ends at the end of the text
+    private final int[] runs;
+
+    private StyledText(String text, int[] runs) {
+        this.text = text;
+        this.runs = runs;
+    }
+
+    /**
+     * Returns the text in the default style.
+     *
+     * @param text the text
+     * @return the styled text
+     */
+    public static StyledText of(String text) {
+        return of(text, Style.NONE);
+    }
+
+    /**
+     * Returns the text in the specified style.
+     *
+     * @param text  the text
+     * @param style the style
+     * @return the styled text
+     */
+    public static StyledText of(String text, int style) {
+        return text.isEmpty() ? EMPTY : new StyledText(text, new int[] { text.length(), style });
+    }
+
+    /**
+     * Returns a builder of a styled text.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return text.charAt(index);
+    }
+
+    /**
+     * Returns the style of the character.
+     *
+     * @param index the index of the character
+     * @return the style
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public int getStyle(int index) {
+        if (index < 0 || index >= text.length()) {
+            throw new IndexOutOfBoundsException("index is out of bounds");
+        }
+        return runs[run(index) + 1];
+    }
+
+    // returns the position in the runs of the run containing the character
+    private int run(int index) {
+        int low = 0;
+        int high = runs.length / 2 - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (runs[middle * 2] <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low * 2;
+    }
+
+    /**
+     * Copies the styles of a range of the characters into the array.
+     */
+    void getStyles(int start, int end, int[] dst, int offset) {
+        for (int i = run(start); start < end; i += 2) {
+            int runEnd = Math.min(runs[i], end);
+            Arrays.fill(dst, offset, offset + runEnd - start, runs[i + 1]);
+            offset += runEnd - start;
+            start = runEnd;
+        }
+    }
+
+    @Override
+    public StyledText subSequence(int start, int end) {
+        if (start == 0 && end == text.length()) {
+            return this;
+        }
+        return new Builder().append(this, start, end).build();
+    }
+
+    /**
+     * Appends the text with the ANSI escape sequences of its styles. A sequence is
+     * only emitted where the style changes, and the default style is restored at
+     * the end.
+     *
+     * @param out the builder to append the text to
+     * @return the builder
+     */
+    public StringBuilder appendAnsi(StringBuilder out) {
+        int from = 0;
+        int current = Style.NONE;
+        for (int i = 0; i < runs.length; i += 2) {
+            if (runs[i + 1] != current) {
+                current = runs[i + 1];
+                Style.appendAnsi(current, out);
+            }
+            out.append(text, from, runs[i]);
+            from = runs[i];
+        }
+        if (current != Style.NONE) {
+            Style.appendAnsi(Style.NONE, out);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the text with the ANSI escape sequences of its styles.
+     *
+     * @return the text with the escape sequences
+     * @see #appendAnsi(StringBuilder)
+     */
+    public String toAnsiString() {
+        return appendAnsi(new StringBuilder(text.length() + runs.length * 4)).toString();
+    }
+
+    /**
+     * Returns the characters of the text, without the styles.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StyledText)) {
+            return false;
+        }
+        StyledText that = (StyledText) o;
+        return text.equals(that.text) && Arrays.equals(runs, that.runs);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * text.hashCode() + Arrays.hashCode(runs);
+    }
+
+    /**
+     * Builder of a styled text.
+     */
+    public static final class Builder {
+
+        private final StringBuilder text = new StringBuilder();
+        private int[] runs = new int[8];
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Appends the text in the specified style.
+         *
+         * @param s     the text
+         * @param style the style
+         * @return this builder
+         */
+        public Builder append(CharSequence s, int style) {
+            text.append(s);
+            return extend(style);
+        }
+
+        /**
+         * Appends the styled text.
+         *
+         * @param s the styled text
+         * @return this builder
+         */
+        public Builder append(StyledText s) {
+            return append(s, 0, s.length());
+        }
+
+        /**
+         * Appends a range of the styled text.
+         *
+         * @param s     the styled text
+         * @param start the start of the range
+         * @param end   the end of the range, exclusive
+         * @return this builder
+         * @throws IndexOutOfBoundsException if the range is out of bounds
+         */
+        public Builder append(StyledText s, int start, int end) {
+            if (start < 0 || end > s.length() || start > end) {
+                throw new IndexOutOfBoundsException("range is out of bounds");
+            }
+            if (start == end) {
+                return this;
+            }
+            int offset = text.length() - start;
+            text.append(s.text, start, end);
+            // the runs overlapping the range, the last one cut at its end
+            for (int i = s.run(start);; i += 2) {
+                add(Math.min(s.runs[i], end) + offset, s.runs[i + 1]);
+                if (s.runs[i] >= end) {
+                    return this;
+                }
+            }
+        }
+
+        /**
+         * Appends the character repeated.
+         */
+        Builder append(char c, int count, int style) {
+            PadTable.append(text, c, count);
+            return extend(style);
+        }
+
+        // the text was appended, the last run is extended to its end
+        private Builder extend(int style) {
+            return text.length() == (size == 0 ? 0 : runs[size - 2]) ? this : add(text.length(), style);
+        }
+
+        private Builder add(int end, int style) {
+            if (size > 0 && runs[size - 1] == style) {
+                runs[size - 2] = end;
+                return this;
+            }
+            if (size == runs.length) {
+                runs = Arrays.copyOf(runs, size * 2);
+            }
+            runs[size++] = end;
+            runs[size++] = style;
+            return this;
+        }
+
+        /**
+         * Returns the length of the text built so far.
+         *
+         * @return the length
+         */
+        public int length() {
+            return text.length();
+        }
+
+        /**
+         * Builds the styled text.
+         *
+         * @return the styled text
+         */
+        public StyledText build() {
+            return size == 0 ? EMPTY : new StyledText(text.toString(), Arrays.copyOf(runs, size));
+        }
+    }
+}
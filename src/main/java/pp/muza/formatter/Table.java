@@ -0,0 +1,188 @@
+package pp.muza.formatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Table of wrapped text cells.
+ * <p>
+ * The column widths are either fixed or computed in one pass over all cells as
+ * the width of the widest cell of the column, limited by the maximum column
+ * width. Every cell is wrapped once, to the width of its column, and the table
+ * is rendered line by line straight into the output, without building
+ * intermediate lists of lines per cell. The columns are separated by {@code |},
+ * the outer border is drawn according to the {@link LineFormatter.Border}.
+ *
+ * <pre>
+ * +-----+---+
+ * |one  |two|
+ * |three|   |
+ * +-----+---+
+ * </pre>
+ *
+ * @author 47niemand
+ */
+public final class Table {
+
+    private final LineFormatter.Border border;
+    private final char pad;
+    private final List<List<String>> rows = new ArrayList<>();
+    private int[] columnWidths;
+    private int maxColumnWidth = Integer.MAX_VALUE;
+    private boolean rowSeparators;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param border the outer border
+     * @param pad    the padding character
+     */
+    public Table(LineFormatter.Border border, char pad) {
+        this.border = border;
+        this.pad = pad;
+    }
+
+    /**
+     * Adds a row. Missing cells are rendered empty.
+     *
+     * @param cells the cells of the row
+     * @return this table
+     */
+    public Table addRow(String... cells) {
+        return addRow(Arrays.asList(cells.clone()));
+    }
+
+    /**
+     * Adds a row. Missing cells are rendered empty. The list is not copied.
+     *
+     * @param cells the cells of the row
+     * @return this table
+     */
+    public Table addRow(List<String> cells) {
+        rows.add(cells);
+        return this;
+    }
+
+    /**
+     * Fixes the column widths, which also fixes the number of columns. Cells
+     * beyond the last column are not rendered.
+     *
+     * @param widths the column widths
+     * @return this table
+     * @throws IllegalArgumentException if a width is less than 1
+     */
+    public Table setColumnWidths(int... widths) {
+        for (int width : widths) {
+            checkPositive(width, "width");
+        }
+        this.columnWidths = widths.clone();
+        return this;
+    }
+
+    /**
+     * Limits the computed column widths. The limit does not apply to fixed column
+     * widths.
+     *
+     * @param width the maximum column width
+     * @return this table
+     * @throws IllegalArgumentException if the width is less than 1
+     */
+    public Table setMaxColumnWidth(int width) {
+        checkPositive(width, "width");
+        this.maxColumnWidth = width;
+        return this;
+    }
+
+    /**
+     * Sets whether the rows are separated by horizontal lines.
+     *
+     * @param rowSeparators true to separate the rows
+     * @return this table
+     */
+    public Table setRowSeparators(boolean rowSeparators) {
+        this.rowSeparators = rowSeparators;
+        return this;
+    }
+
+    /**
+     * Returns the column widths, either the fixed ones or the ones computed from
+     * the rows.
+     *
+     * @return the column widths
+     */
+    public int[] getColumnWidths() {
+        return columnWidths != null ? columnWidths.clone() : TableLayout.measure(rows, maxColumnWidth);
+    }
+
+    /**
+     * Appends the table, every line followed by a line separator.
+     *
+     * @param out the builder to append the table to
+     * @return the builder
+     */
+    public StringBuilder render(StringBuilder out) {
+        return render(rows.iterator(), getColumnWidths(), out);
+    }
+
+    /**
+     * Appends a table of the rows, which are rendered as they are iterated and
+     * are never held in memory together. The rows added to this table are not
+     * rendered.
+     *
+     * @param rows the rows
+     * @param out  the builder to append the table to
+     * @return the builder
+     * @throws IllegalStateException if the column widths are not fixed
+     */
+    public StringBuilder render(Iterator<? extends List<String>> rows, StringBuilder out) {
+        if (columnWidths == null) {
+            throw new IllegalStateException("column widths must be fixed to render streamed rows");
+        }
+        return render(rows, columnWidths, out);
+    }
+
+    private StringBuilder render(Iterator<? extends List<String>> rows, int[] widths, StringBuilder out) {
+        new TableLayout(widths, border, pad).render(rows, rowSeparators,
+                line -> out.append(line).append(Meta.LINES_SEPARATOR));
+        return out;
+    }
+
+    /**
+     * Draws the table on the canvas. The lines that do not fit into the canvas are
+     * clipped.
+     *
+     * @param canvas the canvas
+     * @param left   the left position of the table
+     * @param top    the top position of the table
+     */
+    public void render(AsciiCanvas canvas, int left, int top) {
+        int[] y = { top };
+        new TableLayout(getColumnWidths(), border, pad).render(rows.iterator(), rowSeparators,
+                line -> canvas.drawText(left, y[0]++, line));
+    }
+
+    /**
+     * Returns the lines of the table.
+     *
+     * @return the lines
+     */
+    public List<String> toLines() {
+        List<String> result = new ArrayList<>();
+        new TableLayout(getColumnWidths(), border, pad).render(rows.iterator(), rowSeparators,
+                line -> result.add(line.toString()));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return render(new StringBuilder()).toString();
+    }
+
+    private static void checkPositive(int value, String argument) {
+        if (value < 1) {
+            throw new IllegalArgumentException(argument + " must be positive");
+        }
+    }
+}
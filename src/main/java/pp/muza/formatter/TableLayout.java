@@ -0,0 +1,154 @@
+package pp.muza.formatter;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Renders table rows with fixed column widths one line at a time.
+ * <p>
+ * The cells of a row are wrapped once into reusable {@link WrappedLines}, and
+ * every line of the table is built in a single reusable builder, so rendering
+ * does not depend on the number of rows for its memory.
+ *
+ * @author 47niemand
+ */
+final class TableLayout {
+
+    private final int[] widths;
+    private final LineFormatter.Border border;
+    private final char pad;
+    private final WrappedLines[] cells;
+    private final StringBuilder line = new StringBuilder();
+
+    TableLayout(int[] widths, LineFormatter.Border border, char pad) {
+        this.widths = widths.clone();
+        this.border = border;
+        this.pad = pad;
+        this.cells = new WrappedLines[widths.length];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new WrappedLines();
+        }
+    }
+
+    /**
+     * Measures the column widths of the rows: the width of a column is the
+     * natural width of its widest cell, but at least 1 and at most the maximum
+     * width.
+     *
+     * @param rows     the rows to measure
+     * @param maxWidth the maximum width of a column
+     * @return the column widths
+     */
+    static int[] measure(Iterable<? extends List<? extends CharSequence>> rows, int maxWidth) {
+        int columns = 0;
+        for (List<? extends CharSequence> row : rows) {
+            columns = Math.max(columns, row.size());
+        }
+        int[] widths = new int[columns];
+        for (List<? extends CharSequence> row : rows) {
+            for (int i = 0; i < row.size(); i++) {
+                CharSequence cell = row.get(i);
+                if (cell != null) {
+                    widths[i] = Math.max(widths[i], WrappedLines.naturalWidth(cell));
+                }
+            }
+        }
+        for (int i = 0; i < columns; i++) {
+            widths[i] = Math.max(1, Math.min(widths[i], maxWidth));
+        }
+        return widths;
+    }
+
+    /**
+     * Renders the rows, passing every line of the table to the sink. The builder
+     * passed to the sink is reused for the next line.
+     *
+     * @param rows          the rows to render
+     * @param rowSeparators whether to separate the rows with horizontal lines
+     * @param sink          the consumer of the lines
+     */
+    void render(Iterator<? extends List<? extends CharSequence>> rows, boolean rowSeparators,
+            Consumer<StringBuilder> sink) {
+        if (border.top) {
+            sink.accept(horizontalLine());
+        }
+        boolean first = true;
+        while (rows.hasNext()) {
+            if (!first && rowSeparators) {
+                sink.accept(horizontalLine());
+            }
+            first = false;
+            renderRow(rows.next(), sink);
+        }
+        if (border.bottom) {
+            sink.accept(horizontalLine());
+        }
+    }
+
+    /**
+     * Renders the row, passing every line of it to the sink. The builder passed to
+     * the sink is reused for the next line.
+     *
+     * @param row  the row to render
+     * @param sink the consumer of the lines
+     */
+    void renderRow(List<? extends CharSequence> row, Consumer<StringBuilder> sink) {
+        int height = wrapRow(row);
+        for (int i = 0; i < height; i++) {
+            sink.accept(rowLine(i));
+        }
+    }
+
+    /**
+     * Builds a horizontal line of the table, with {@code +} at the column
+     * separators.
+     *
+     * @return the line, in a builder that is reused for the next line
+     */
+    StringBuilder horizontalLine() {
+        line.setLength(0);
+        if (border.left) {
+            line.append('+');
+        }
+        for (int i = 0; i < widths.length; i++) {
+            if (i > 0) {
+                line.append('+');
+            }
+            PadTable.append(line, '-', widths[i]);
+        }
+        if (border.right) {
+            line.append('+');
+        }
+        return line;
+    }
+
+    private int wrapRow(List<? extends CharSequence> row) {
+        int height = 1;
+        for (int i = 0; i < cells.length; i++) {
+            CharSequence cell = i < row.size() && row.get(i) != null ? row.get(i) : "";
+            // wrap so that the lines fill the column, textWrap keeps them shorter than its width
+            cells[i].wrap(cell, widths[i] == Integer.MAX_VALUE ? widths[i] : widths[i] + 1);
+            height = Math.max(height, cells[i].size());
+        }
+        return height;
+    }
+
+    private StringBuilder rowLine(int index) {
+        line.setLength(0);
+        if (border.left) {
+            line.append('|');
+        }
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                line.append('|');
+            }
+            int length = index < cells[i].size() ? cells[i].append(index, pad, widths[i], line) : 0;
+            PadTable.append(line, pad, widths[i] - length);
+        }
+        if (border.right) {
+            line.append('|');
+        }
+        return line;
+    }
+}
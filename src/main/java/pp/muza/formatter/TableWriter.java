@@ -0,0 +1,304 @@
+package pp.muza.formatter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes a table row by row to a {@link Writer} or an {@link OutputStream}.
+ * <p>
+ * Unlike {@link Table}, the rows are written as soon as they are added and are
+ * not kept, so the memory used does not depend on the number of rows. The
+ * column widths are either fixed, or measured on the first rows (the sample);
+ * the sample is held until it is complete or the writer is closed. Cells of the
+ * later rows are wrapped and trimmed to the measured widths, and cells beyond
+ * the measured columns are not written.
+ * <p>
+ * The lines are copied into a reusable buffer that is written out when full.
+ * {@link #close()} writes the bottom border and closes the underlying stream.
+ *
+ * @author 47niemand
+ */
+public final class TableWriter implements Closeable, Flushable {
+
+    private static final int DEFAULT_SAMPLE_SIZE = 100;
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] SEPARATOR = Meta.LINES_SEPARATOR.toCharArray();
+
+    private final Writer out;
+    private final LineFormatter.Border border;
+    private final char pad;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final Consumer<StringBuilder> sink = this::writeLine;
+    private int count;
+
+    private int[] columnWidths;
+    private int maxColumnWidth = Integer.MAX_VALUE;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private boolean rowSeparators;
+
+    private List<List<String>> sample = new ArrayList<>();
+    private TableLayout layout;
+    private boolean first = true;
+    private boolean closed;
+
+    /**
+     * Creates a table writer.
+     *
+     * @param out    the writer to write the table to
+     * @param border the outer border
+     * @param pad    the padding character
+     */
+    public TableWriter(Writer out, LineFormatter.Border border, char pad) {
+        this.out = out;
+        this.border = border;
+        this.pad = pad;
+    }
+
+    /**
+     * Creates a table writer.
+     *
+     * @param out     the stream to write the table to
+     * @param charset the charset to encode the table with
+     * @param border  the outer border
+     * @param pad     the padding character
+     */
+    public TableWriter(OutputStream out, Charset charset, LineFormatter.Border border, char pad) {
+        this(new OutputStreamWriter(out, charset), border, pad);
+    }
+
+    /**
+     * Fixes the column widths, which also fixes the number of columns. No rows are
+     * sampled.
+     *
+     * @param widths the column widths
+     * @return this writer
+     * @throws IllegalArgumentException if a width is less than 1
+     * @throws IllegalStateException    if a row was already written
+     */
+    public TableWriter setColumnWidths(int... widths) {
+        checkNotStarted();
+        for (int width : widths) {
+            checkPositive(width, "width");
+        }
+        this.columnWidths = widths.clone();
+        return this;
+    }
+
+    /**
+     * Sets the number of rows the column widths are measured on, unless they are
+     * fixed. The default is 100.
+     *
+     * @param rows the number of rows
+     * @return this writer
+     * @throws IllegalArgumentException if the number of rows is less than 1
+     * @throws IllegalStateException    if a row was already written
+     */
+    public TableWriter setSampleSize(int rows) {
+        checkNotStarted();
+        checkPositive(rows, "rows");
+        this.sampleSize = rows;
+        return this;
+    }
+
+    /**
+     * Limits the measured column widths.
+     *
+     * @param width the maximum column width
+     * @return this writer
+     * @throws IllegalArgumentException if the width is less than 1
+     * @throws IllegalStateException    if a row was already written
+     */
+    public TableWriter setMaxColumnWidth(int width) {
+        checkNotStarted();
+        checkPositive(width, "width");
+        this.maxColumnWidth = width;
+        return this;
+    }
+
+    /**
+     * Sets whether the rows are separated by horizontal lines.
+     *
+     * @param rowSeparators true to separate the rows
+     * @return this writer
+     * @throws IllegalStateException if a row was already written
+     */
+    public TableWriter setRowSeparators(boolean rowSeparators) {
+        checkNotStarted();
+        this.rowSeparators = rowSeparators;
+        return this;
+    }
+
+    /**
+     * Writes a row. Missing cells are written empty.
+     *
+     * @param cells the cells of the row
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void writeRow(String... cells) throws IOException {
+        writeRow(Arrays.asList(cells));
+    }
+
+    /**
+     * Writes a row. Missing cells are written empty.
+     *
+     * @param cells the cells of the row
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void writeRow(List<String> cells) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("writer is closed");
+        }
+        if (layout == null) {
+            if (columnWidths == null) {
+                sample.add(new ArrayList<>(cells));
+                if (sample.size() == sampleSize) {
+                    writeSample();
+                }
+                return;
+            }
+            start(columnWidths);
+        }
+        writeLayoutRow(cells);
+    }
+
+    /**
+     * Writes all rows of the iterator.
+     *
+     * @param rows the rows
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void writeRows(Iterator<? extends List<String>> rows) throws IOException {
+        while (rows.hasNext()) {
+            writeRow(rows.next());
+        }
+    }
+
+    /**
+     * Writes the buffered lines and flushes the underlying stream. The sampled
+     * rows are not written until the sample is complete.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Writes the rest of the table with its bottom border and closes the
+     * underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (layout == null) {
+                if (columnWidths == null) {
+                    writeSample();
+                } else {
+                    start(columnWidths);
+                }
+            }
+            if (border.bottom) {
+                write(layout.horizontalLine());
+            }
+            flushBuffer();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void writeSample() throws IOException {
+        start(TableLayout.measure(sample, maxColumnWidth));
+        List<List<String>> rows = sample;
+        sample = null;
+        for (List<String> row : rows) {
+            writeLayoutRow(row);
+        }
+    }
+
+    private void start(int[] widths) throws IOException {
+        layout = new TableLayout(widths, border, pad);
+        if (border.top) {
+            write(layout.horizontalLine());
+        }
+    }
+
+    private void writeLayoutRow(List<String> cells) throws IOException {
+        if (!first && rowSeparators) {
+            write(layout.horizontalLine());
+        }
+        first = false;
+        try {
+            layout.renderRow(cells, sink);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeLine(StringBuilder line) {
+        try {
+            write(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(StringBuilder line) throws IOException {
+        int length = line.length();
+        for (int from = 0; from < length;) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            int n = Math.min(length - from, buffer.length - count);
+            line.getChars(from, from + n, buffer, count);
+            count += n;
+            from += n;
+        }
+        for (char c : SEPARATOR) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = c;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void checkNotStarted() {
+        if (layout != null || (sample != null && !sample.isEmpty()) || closed) {
+            throw new IllegalStateException("table already started");
+        }
+    }
+
+    private static void checkPositive(int value, String argument) {
+        if (value < 1) {
+            throw new IllegalArgumentException(argument + " must be positive");
+        }
+    }
+}
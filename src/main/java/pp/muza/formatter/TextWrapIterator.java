@@ -0,0 +1,199 @@
+package pp.muza.formatter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily wraps a character stream, producing the same lines as
+ * {@link LineFormatter#textWrap(String, int, char)}.
+ * <p>
+ * The text is read in small chunks, so the memory used is proportional to the
+ * width of the lines and to the longest word, not to the size of the text.
+ *
+ * @author 47niemand
+ */
+final class TextWrapIterator implements Iterator<String> {
+
+    static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final CharSequence text;
+    private final char[] buffer;
+    private final int width;
+    private final char space;
+
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder word = new StringBuilder();
+    // whitespace seen after the last non-blank character of the current line,
+    // runs of word delimiters are collapsed into a single space
+    private final StringBuilder tail = new StringBuilder();
+    private boolean hasContent;
+    private long rawLength;
+    private boolean lastWasCarriageReturn;
+    private boolean empty = true;
+    // empty lines are held back until it is known that they are not trailing
+    private long pendingEmpty;
+
+    private long readyEmpty;
+    private final ArrayDeque<String> ready = new ArrayDeque<>();
+
+    TextWrapIterator(Reader reader, int width, char space) {
+        this(reader, width, space, BUFFER_SIZE);
+    }
+
+    TextWrapIterator(Reader reader, int width, char space, int bufferSize) {
+        this.reader = reader;
+        this.text = null;
+        this.buffer = new char[bufferSize];
+        this.width = width;
+        this.space = space;
+    }
+
+    TextWrapIterator(CharSequence text, int width, char space) {
+        this.reader = null;
+        this.text = text;
+        this.buffer = null;
+        this.width = width;
+        this.space = space;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (readyEmpty == 0 && ready.isEmpty() && !eof) {
+            int c = read();
+            if (c < 0) {
+                finish();
+            } else {
+                accept((char) c);
+            }
+        }
+        return readyEmpty > 0 || !ready.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (readyEmpty > 0) {
+            readyEmpty--;
+            return "";
+        }
+        return ready.poll();
+    }
+
+    private int read() {
+        if (text != null) {
+            return position < text.length() ? text.charAt(position++) : -1;
+        }
+        if (position == limit) {
+            try {
+                int n;
+                do {
+                    n = reader.read(buffer, 0, buffer.length);
+                } while (n == 0);
+                if (n < 0) {
+                    return -1;
+                }
+                position = 0;
+                limit = n;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return buffer[position++];
+    }
+
+    private void accept(char c) {
+        empty = false;
+        if (c == '\n') {
+            endLine(rawLength - (lastWasCarriageReturn ? 1 : 0) > 0);
+            return;
+        }
+        rawLength++;
+        lastWasCarriageReturn = c == '\r';
+        if (c <= ' ') {
+            // the whitespace only becomes part of the line if something follows it
+            if (!LineFormatter.isWordDelimiter(c)) {
+                tail.append(c);
+            } else if (tail.length() == 0 || tail.charAt(tail.length() - 1) != ' ') {
+                tail.append(' ');
+            }
+            return;
+        }
+        if (hasContent) {
+            for (int i = 0; i < tail.length(); i++) {
+                acceptContent(tail.charAt(i));
+            }
+        }
+        tail.setLength(0);
+        hasContent = true;
+        acceptContent(c);
+    }
+
+    private void acceptContent(char c) {
+        if (c == ' ') {
+            endWord();
+        } else {
+            word.append(c);
+        }
+    }
+
+    private void endWord() {
+        if (word.length() == 0) {
+            return;
+        }
+        if (line.length() == 0) {
+            line.append(word);
+        } else if (1 + word.length() + line.length() >= width) {
+            emit(line.toString());
+            line.setLength(0);
+            line.append(word);
+        } else {
+            line.append(space).append(word);
+        }
+        word.setLength(0);
+    }
+
+    private void endLine(boolean nonEmpty) {
+        endWord();
+        if (nonEmpty) {
+            emit(line.toString());
+        } else {
+            pendingEmpty++;
+        }
+        line.setLength(0);
+        tail.setLength(0);
+        hasContent = false;
+        rawLength = 0;
+        lastWasCarriageReturn = false;
+    }
+
+    private void emit(String s) {
+        readyEmpty += pendingEmpty;
+        pendingEmpty = 0;
+        if (s.isEmpty()) {
+            readyEmpty++;
+        } else {
+            ready.add(s);
+        }
+    }
+
+    private void finish() {
+        eof = true;
+        if (empty) {
+            // an empty text is wrapped into a single empty line
+            emit("");
+        } else if (rawLength > 0) {
+            endLine(true);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package pp.muza.formatter;
+
+import java.util.Arrays;
+
+/**
+ * Reusable result of wrapping a text, holding the wrapped lines as ranges of the
+ * text instead of strings.
+ * <p>
+ * The lines are the same as the ones of
+ * {@link LineFormatter#textWrap(String, int, char)}: a line covers a range of
+ * words of the text, and the word delimiters between them are replaced by a
+ * single padding character when the line is appended.
+ *
+ * @author 47niemand
+ */
+final class WrappedLines {
+
+    private CharSequence text = "";
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int[] lengths = new int[8];
+    private int count;
+
+    /**
+     * Wraps the text to the specified width, replacing the previous lines.
+     *
+     * @param text  the text to wrap
+     * @param width the width of the text
+     */
+    void wrap(CharSequence text, int width) {
+        this.text = text;
+        count = 0;
+        if (text.length() == 0) {
+            add(0, 0, 0);
+            return;
+        }
+        int end = LineFormatter.contentEnd(text);
+        if (end == 0) {
+            return;
+        }
+        int start = 0;
+        while (true) {
+            int lineEnd = start;
+            while (lineEnd < end && text.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            wrapLine(start, lineEnd, width);
+            if (lineEnd == end) {
+                break;
+            }
+            start = lineEnd + 1;
+        }
+    }
+
+    private void wrapLine(int from, int to, int width) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        int lineStart = from;
+        int lineEnd = from;
+        int lineLength = 0;
+        int i = from;
+        while (i < to) {
+            int wordEnd = i;
+            while (wordEnd < to && !LineFormatter.isWordDelimiter(text.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            int wordLength = wordEnd - i;
+            if (lineLength == 0) {
+                lineStart = i;
+            } else if (1 + wordLength + lineLength >= width) {
+                add(lineStart, lineEnd, lineLength);
+                lineStart = i;
+                lineLength = 0;
+            } else {
+                lineLength++;
+            }
+            lineEnd = wordEnd;
+            lineLength += wordLength;
+            i = wordEnd;
+            while (i < to && LineFormatter.isWordDelimiter(text.charAt(i))) {
+                i++;
+            }
+        }
+        add(lineStart, lineEnd, lineLength);
+    }
+
+    private void add(int start, int end, int length) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        lengths[count] = length;
+        count++;
+    }
+
+    /**
+     * Returns the number of wrapped lines.
+     *
+     * @return the number of lines
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the start of the range of the text covered by the wrapped line.
+     *
+     * @param line the index of the line
+     * @return the start of the line
+     */
+    int start(int line) {
+        return starts[line];
+    }
+
+    /**
+     * Returns the end of the range of the text covered by the wrapped line.
+     *
+     * @param line the index of the line
+     * @return the end of the line, exclusive
+     */
+    int end(int line) {
+        return ends[line];
+    }
+
+    /**
+     * Returns the length of the wrapped line.
+     *
+     * @param line the index of the line
+     * @return the length of the line
+     */
+    int length(int line) {
+        return lengths[line];
+    }
+
+    /**
+     * Appends the wrapped line, but not more than the specified number of
+     * characters.
+     *
+     * @param line  the index of the line
+     * @param space the character to separate the words with
+     * @param limit the maximum number of characters to append
+     * @param sb    the builder to append the line to
+     * @return the number of characters appended
+     */
+    int append(int line, char space, int limit, StringBuilder sb) {
+        int n = 0;
+        boolean delimiter = false;
+        for (int i = starts[line], end = ends[line]; i < end && n < limit; i++) {
+            char c = text.charAt(i);
+            if (LineFormatter.isWordDelimiter(c)) {
+                delimiter = true;
+                continue;
+            }
+            if (delimiter) {
+                sb.append(space);
+                delimiter = false;
+                if (++n == limit) {
+                    break;
+                }
+            }
+            sb.append(c);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the width the text needs not to be wrapped, that is the length of its
+     * longest line once the word delimiters are collapsed.
+     *
+     * @param text the text
+     * @return the width of the text
+     */
+    static int naturalWidth(CharSequence text) {
+        int max = 0;
+        int length = 0;
+        int pending = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                length = 0;
+                pending = 0;
+            } else if (c <= ' ') {
+                // whitespace only counts once something follows it on the line
+                if (length > 0 && (!LineFormatter.isWordDelimiter(c) || pending == 0
+                        || !LineFormatter.isWordDelimiter(text.charAt(i - 1)))) {
+                    pending++;
+                }
+            } else {
+                length += pending + 1;
+                pending = 0;
+                max = Math.max(max, length);
+            }
+        }
+        return max;
+    }
+}
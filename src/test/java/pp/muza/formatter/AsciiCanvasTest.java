@@ -1,9 +1,18 @@
 package pp.muza.formatter;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -29,6 +38,9 @@ class AsciiCanvasTest {
         assertEquals('l', canvas.get(2, 0));
         assertEquals('l', canvas.get(3, 0));
         assertEquals('o', canvas.get(4, 0));
+        // a null text draws nothing
+        canvas.drawText(0, 0, null);
+        assertEquals('H', canvas.get(0, 0));
     }
 
     @Test
@@ -71,6 +83,117 @@ class AsciiCanvasTest {
         assertEquals('r', c[1][2]);
         assertEquals('l', c[1][3]);
         assertEquals('d', c[1][4]);
+
+        c[0][0] = 'X';
+        assertEquals('H', canvas.get(0, 0));
+    }
+
+    @Test
+    void drawTextClipped() {
+        AsciiCanvas canvas = new AsciiCanvas(5, 2);
+        canvas.clear('.');
+        canvas.drawText(3, 1, "Hello");
+        canvas.drawText(-1, 0, "Hello");
+        canvas.drawText(0, 2, "Hello");
+        assertEquals(List.of(".....", "...He"), canvas.getLines());
+    }
+
+    @Test
+    void takeChangedLines() {
+        AsciiCanvas canvas = new AsciiCanvas(5, 3);
+        canvas.drawText(0, 1, "Hello");
+        assertEquals(Map.of(0, "     ", 1, "Hello", 2, "     "), canvas.takeChangedLines());
+        assertEquals(Map.of(), canvas.takeChangedLines());
+
+        // redrawing the same content is not a change
+        canvas.clear();
+        canvas.drawText(0, 1, "Hello");
+        canvas.drawText(0, 2, "World");
+        assertEquals(Map.of(2, "World"), canvas.takeChangedLines());
+
+        canvas.drawText(1, 0, "ab");
+        String expected = "\u001B[1;1H ab  ";
+        assertEquals(expected, canvas.takeChangesAnsi(new StringBuilder()).toString());
+    }
+
+    @Test
+    void drawTextDisplayWidth() {
+        AsciiCanvas canvas = new AsciiCanvas(6, 1);
+        canvas.drawText(0, 0, "\u4e2d\u6587e\u0301!", LineFormatter.Measure.DISPLAY);
+        assertEquals("\u4e2d\u6587e!", canvas.getLines().get(0));
+        assertEquals(AsciiCanvas.WIDE_TAIL, canvas.get(1, 0));
+
+        // a wide character cut by drawing over one of its halves is blanked
+        canvas.drawText(1, 0, "x");
+        assertEquals(" x\u6587e!", canvas.getLines().get(0));
+        canvas.drawText(2, 0, "y");
+        assertEquals(" xy e!", canvas.getLines().get(0));
+
+        // a wide character does not fit into the last column
+        canvas.drawText(5, 0, "\uD83D\uDE00", LineFormatter.Measure.DISPLAY);
+        assertEquals(" xy e!", canvas.getLines().get(0));
+        canvas.drawText(4, 0, "\uD83D\uDE00", LineFormatter.Measure.DISPLAY);
+        assertEquals(" xy \uD83D\uDE00", canvas.getLines().get(0));
+    }
+
+    @Test
+    void surrogatePairs() {
+        AsciiCanvas canvas = new AsciiCanvas(4, 1);
+        canvas.drawText(0, 0, "\uD83D\uDE00", LineFormatter.Measure.DISPLAY);
+        canvas.drawText(1, 0, "x");
+        assertEquals(" x  ", canvas.getLines().get(0));
+        canvas.drawText(2, 0, "\uD83D\uDE00", LineFormatter.Measure.DISPLAY);
+        canvas.drawText(0, 0, "abc");
+        assertEquals("abc ", canvas.getLines().get(0));
+        canvas.drawText(1, 0, "\uD83D\uDE00", LineFormatter.Measure.DISPLAY);
+        canvas.drawText(0, 0, "\u4e2d", LineFormatter.Measure.DISPLAY);
+        assertEquals("\u4e2d  ", canvas.getLines().get(0));
+
+        // a character one column wide is drawn as the replacement character
+        canvas.drawText(0, 0, "\uD835\uDC00b", LineFormatter.Measure.DISPLAY);
+        assertEquals("\uFFFDb  ", canvas.getLines().get(0));
+
+        // a text clipped at the right edge between the halves of a pair
+        AsciiCanvas clipped = new AsciiCanvas(3, 3);
+        clipped.drawText(0, 0, "ab\uD83D\uDE00");
+        clipped.drawText(1, 1, StyledText.of("b\uD83D\uDE00", Style.BOLD));
+        clipped.drawText(0, 2, new StringBuilder("ab\uD83D\uDE00"));
+        assertEquals(List.of("ab ", " b ", "ab "), clipped.getLines());
+        assertEquals(' ', clipped.get(2, 0));
+        clipped.region(0, 0, 2, 1).drawText(1, 0, "\uD83D\uDE00");
+        assertEquals("a  ", clipped.getLines().get(0));
+
+        // the halves of surrogate pairs cut by the edges of a copy are blanked
+        AsciiCanvas source = new AsciiCanvas(4, 1);
+        source.drawText(0, 0, "\uD83D\uDE00\uD83D\uDE01", LineFormatter.Measure.DISPLAY);
+        canvas.blit(source, 1, 0, 2, 1, 0, 0);
+        assertEquals("    ", canvas.getLines().get(0));
+        canvas.blit(source, 0, 0, 3, 1, 1, 0);
+        assertEquals(" \uD83D\uDE00 ", canvas.getLines().get(0));
+    }
+
+    @Test
+    void nulCells() {
+        AsciiCanvas canvas = new AsciiCanvas(4, 1);
+        canvas.drawText(0, 0, "\u4e2d", LineFormatter.Measure.DISPLAY);
+        assertEquals("\u4e2d  ", canvas.getLines().get(0));
+
+        // the cells left by a wide character are told apart from drawn NULs
+        canvas.clear('\0');
+        assertEquals("\0\0\0\0", canvas.getLines().get(0));
+        assertEquals("\0\0\0\0" + Meta.LINES_SEPARATOR, canvas.toString());
+        canvas.drawText(1, 0, "\u4e2d", LineFormatter.Measure.DISPLAY);
+        assertEquals("\0\u4e2d\0", canvas.getLines().get(0));
+        canvas.drawText(2, 0, "\0");
+        assertEquals("\0 \0\0", canvas.getLines().get(0));
+
+        AsciiCanvas copy = new AsciiCanvas(4, 1);
+        canvas.drawText(0, 0, "\u4e2d", LineFormatter.Measure.DISPLAY);
+        copy.blit(canvas, 0, 0);
+        assertEquals("\u4e2d\0\0", copy.getLines().get(0));
+        copy.takeChangedLines();
+        copy.drawText(1, 0, "\0");
+        assertEquals(Map.of(0, " \0\0\0"), copy.takeChangedLines());
     }
 
     @Test
@@ -93,4 +216,242 @@ class AsciiCanvasTest {
         String expected = "Hello" + Meta.LINES_SEPARATOR + "World" + Meta.LINES_SEPARATOR;
         assertEquals(expected, s);
     }
-}
\ No newline at end of file
+
+    @Test
+    void writeTo() throws IOException {
+        AsciiCanvas canvas = new AsciiCanvas(6, 3);
+        canvas.pasteLines(0, 0, List.of("Hello", "W\u00F6rld"));
+        canvas.drawText(0, 2, "\u4E2D\u6587", LineFormatter.Measure.DISPLAY);
+        String expected = canvas.toString();
+
+        StringWriter writer = new StringWriter();
+        canvas.writeTo(writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        canvas.writeTo(stream, StandardCharsets.UTF_8);
+        assertEquals(expected, stream.toString(StandardCharsets.UTF_8));
+
+        stream.reset();
+        canvas.writeTo(stream, StandardCharsets.ISO_8859_1);
+        assertEquals(expected.replace('\u4E2D', '?').replace('\u6587', '?'),
+                stream.toString(StandardCharsets.ISO_8859_1));
+
+        ByteBuffer buffer = canvas.writeTo(ByteBuffer.allocate(64), StandardCharsets.UTF_8);
+        assertEquals(expected, new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeToLoneSurrogate() throws IOException {
+        // a high surrogate ending a row is replaced, as the writer's output is when encoded
+        AsciiCanvas canvas = new AsciiCanvas(3, 2);
+        canvas.drawText(0, 0, "ab\uD83D");
+        StringWriter writer = new StringWriter();
+        canvas.writeTo(writer);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        canvas.writeTo(stream, StandardCharsets.UTF_8);
+        assertEquals(writer.toString(), canvas.toString());
+        assertEquals("ab?" + Meta.LINES_SEPARATOR + "   " + Meta.LINES_SEPARATOR,
+                stream.toString(StandardCharsets.UTF_8));
+        assertArrayEquals(writer.toString().getBytes(StandardCharsets.UTF_8), stream.toByteArray());
+    }
+
+    @Test
+    void writeToBuffers() {
+        AsciiCanvas canvas = new AsciiCanvas(10, 4);
+        canvas.pasteLines(0, 0, List.of("one", "two \u00E9", "three", "four"));
+        String expected = canvas.toString();
+        ByteBuffer[] buffers = new ByteBuffer[20];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.allocate(7);
+        }
+        int used = canvas.writeTo(buffers, StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < used; i++) {
+            out.write(buffers[i].array(), 0, buffers[i].position());
+        }
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+        assertTrue(used < buffers.length);
+        assertEquals(0, buffers[used].position());
+
+        assertThrows(BufferOverflowException.class,
+                () -> canvas.writeTo(new ByteBuffer[] { ByteBuffer.allocate(8), ByteBuffer.allocate(8) },
+                        StandardCharsets.UTF_8));
+        assertThrows(BufferOverflowException.class,
+                () -> canvas.writeTo(ByteBuffer.allocate(8), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void fillRect() {
+        AsciiCanvas canvas = new AsciiCanvas(5, 3);
+        canvas.fillRect(-2, 1, 4, 9, '#');
+        canvas.drawHLine(3, 0, 7, '-');
+        canvas.drawVLine(4, -1, 2, '|');
+        canvas.fillRect(0, 0, 0, 3, 'x');
+        assertEquals(List.of("   -|", "##   ", "##   "), canvas.getLines());
+        assertEquals(Map.of(0, "   -|", 1, "##   ", 2, "##   "), canvas.takeChangedLines());
+        canvas.fillRect(2, 1, 1, 1, '#');
+        assertEquals(Map.of(1, "###  "), canvas.takeChangedLines());
+    }
+
+    @Test
+    void drawBox() {
+        for (LineFormatter.Border border : LineFormatter.Border.values()) {
+            AsciiCanvas canvas = new AsciiCanvas(7, 4);
+            canvas.drawBox(0, 0, 7, 4, border);
+            assertEquals(LineFormatter.textRectangle(7, 4, "", border, ' '), canvas.getLines(), border.name());
+        }
+        AsciiCanvas canvas = new AsciiCanvas(4, 3);
+        canvas.clear('.');
+        canvas.drawBox(2, -1, 3, 3, LineFormatter.Border.ALL);
+        assertEquals(List.of("..|.", "..+-", "...."), canvas.getLines());
+    }
+
+    @Test
+    void blit() {
+        AsciiCanvas source = new AsciiCanvas(4, 2);
+        source.pasteLines(0, 0, List.of("abcd", "efgh"));
+        source.drawText(1, 0, StyledText.of("B", Style.BOLD));
+        AsciiCanvas canvas = new AsciiCanvas(5, 3);
+        canvas.clear('.');
+        canvas.blit(source, 1, 0, 3, 2, -1, 2);
+        canvas.blit(source, 3, 0);
+        assertEquals(List.of("...aB", "...ef", "cd..."), canvas.getLines());
+        assertEquals(Style.BOLD, canvas.getStyle(4, 0));
+        assertEquals(Style.NONE, canvas.getStyle(0, 2));
+
+        // overlapping copies within the canvas
+        canvas.pasteLines(0, 0, List.of("12345", "67890", "abcde"));
+        canvas.blit(canvas, 0, 0, 4, 2, 1, 1);
+        assertEquals(List.of("12345", "61234", "a6789"), canvas.getLines());
+        canvas.blit(canvas, 1, 1, 4, 2, 0, 0);
+        assertEquals(List.of("12345", "67894", "a6789"), canvas.getLines());
+
+        // a wide character cut at the edge of the copy is copied before it is blanked
+        AsciiCanvas wide = new AsciiCanvas(8, 1);
+        wide.drawText(0, 0, "\u4E2D\u6587ab", LineFormatter.Measure.DISPLAY);
+        wide.blit(wide, 0, 0, 4, 1, 1, 0);
+        assertEquals(" \u4E2D\u6587b  ", wide.getLines().get(0));
+    }
+
+    @Test
+    void blitWide() {
+        AsciiCanvas source = new AsciiCanvas(6, 1);
+        source.drawText(0, 0, "a\u4E2D\u6587b", LineFormatter.Measure.DISPLAY);
+        AsciiCanvas canvas = new AsciiCanvas(4, 1);
+        canvas.blit(source, 2, 0, 3, 1, 0, 0);
+        assertEquals(" \u6587 ", canvas.getLines().get(0));
+        canvas.blit(source, 1, 0, 3, 1, 1, 0);
+        assertEquals(" \u4E2D ", canvas.getLines().get(0));
+    }
+
+    @Test
+    void region() {
+        AsciiCanvas canvas = new AsciiCanvas(6, 4);
+        canvas.clear('.');
+        canvas.takeChangedLines();
+        AsciiCanvas region = canvas.region(1, 1, 4, 2);
+        assertEquals(4, region.getWidth());
+        assertEquals(2, region.getHeight());
+        assertEquals(List.of("....", "...."), region.getLines());
+
+        region.clear();
+        region.drawText(2, 0, "abcdef");
+        region.drawText(-1, 1, "x");
+        region.drawBox(0, 1, 9, 9, LineFormatter.Border.ALL);
+        assertEquals(List.of("  ab", "+---"), region.getLines());
+        assertEquals(List.of("......", ".  ab.", ".+---.", "......"), canvas.getLines());
+        assertEquals('a', region.get(2, 0));
+        assertEquals(Map.of(1, ".  ab.", 2, ".+---."), canvas.takeChangedLines());
+
+        AsciiCanvas inner = region.region(1, 0, 2, 1);
+        inner.drawText(0, 0, StyledText.of("XYZ", Style.BOLD));
+        assertEquals("XY" + Meta.LINES_SEPARATOR, inner.toString());
+        assertEquals(Style.BOLD, canvas.getStyle(3, 1));
+        assertEquals(List.of(" XYb", "+---"), region.getLines());
+        assertEquals(Map.of(0, " XYb", 1, "+---"), region.takeChangedLines());
+        assertEquals(Map.of(), region.takeChangedLines());
+        // the changes of the region are left for the canvas
+        assertEquals(Map.of(1, ". XYb."), canvas.takeChangedLines());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> canvas.region(3, 0, 4, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> region.region(0, -1, 1, 1));
+    }
+
+    @Test
+    void regionClipsWide() {
+        // the halves of a wide character cut by the edges of a region are blanked
+        AsciiCanvas canvas = new AsciiCanvas(6, 1);
+        canvas.drawText(1, 0, "\u4e2d", LineFormatter.Measure.DISPLAY);
+        canvas.region(2, 0, 2, 1).drawText(0, 0, "x");
+        assertEquals("  x   ", canvas.getLines().get(0));
+
+        canvas.drawText(1, 0, "\u4e2d", LineFormatter.Measure.DISPLAY);
+        canvas.region(0, 0, 2, 1).drawText(1, 0, "y");
+        assertEquals(" y    ", canvas.getLines().get(0));
+
+        canvas.drawText(1, 0, "\u4e2d", LineFormatter.Measure.DISPLAY);
+        canvas.region(0, 0, 2, 1).drawText(0, 0, "ab", LineFormatter.Measure.DISPLAY);
+        assertEquals("ab    ", canvas.getLines().get(0));
+
+        canvas.drawText(3, 0, "\uD83D\uDE00", LineFormatter.Measure.DISPLAY);
+        canvas.region(4, 0, 2, 1).fillRect(0, 0, 1, 1, '#');
+        assertEquals("ab  # ", canvas.getLines().get(0));
+    }
+
+    @Test
+    void regionClearClipsWide() {
+        // clearing a region blanks the halves of a wide character outside of it
+        AsciiCanvas canvas = new AsciiCanvas(4, 1);
+        canvas.drawText(0, 0, "a\u4e2db", LineFormatter.Measure.DISPLAY);
+        canvas.region(2, 0, 2, 1).clear('.');
+        assertEquals("a ..", canvas.getLines().get(0));
+
+        canvas.drawText(0, 0, "a\u4e2db", LineFormatter.Measure.DISPLAY);
+        canvas.region(0, 0, 2, 1).clear('.');
+        assertEquals(".. b", canvas.getLines().get(0));
+    }
+
+    @Test
+    void blitRegionClipsWide() {
+        // a wide character cut by the right edge of the source region is not copied
+        AsciiCanvas source = new AsciiCanvas(4, 1);
+        source.drawText(0, 0, "a\u4e2db", LineFormatter.Measure.DISPLAY);
+        AsciiCanvas canvas = new AsciiCanvas(4, 1);
+        canvas.blit(source.region(0, 0, 2, 1), 0, 0);
+        assertEquals("a   ", canvas.getLines().get(0));
+    }
+
+    @Test
+    void regionAnsi() {
+        AsciiCanvas canvas = new AsciiCanvas(5, 3);
+        AsciiCanvas region = canvas.region(2, 1, 3, 2);
+        canvas.takeChangesAnsi(new StringBuilder());
+        region.takeChangesAnsi(new StringBuilder());
+        region.drawText(0, 1, "ab");
+        assertEquals("\u001B[3;3Hab ", region.takeChangesAnsi(new StringBuilder()).toString());
+        assertEquals("\u001B[3;1H  ab ", canvas.takeChangesAnsi(new StringBuilder()).toString());
+    }
+
+    @Test
+    void regionsInParallel() throws InterruptedException {
+        AsciiCanvas canvas = new AsciiCanvas(8, 2);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            AsciiCanvas region = canvas.region(i * 2, 0, 2, 2);
+            char c = (char) ('a' + i);
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    region.fillRect(0, 0, 2, 2, c);
+                    region.drawText(0, 1, StyledText.of(String.valueOf(c), Style.fg(j % 8)));
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of("aabbccdd", "aabbccdd"), canvas.getLines());
+        assertEquals(Style.fg(999 % 8), canvas.getStyle(6, 1));
+    }
+}
@@ -0,0 +1,69 @@
+package pp.muza.formatter;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BlockTest {
+
+    @Test
+    void joinHorizontal() {
+        List<String> s1 = List.of("text1", "text2");
+        List<String> s2 = List.of("text3", "text4", "text5");
+        Block block = LineFormatter.joinHorizontal(Block.of(s1), Block.of(s2));
+        Assertions.assertEquals(3, block.getHeight());
+        Assertions.assertLinesMatch(LineFormatter.joinHorizontal(s1, s2), block.toLines());
+        Assertions.assertEquals("text2text4", block.getLine(1));
+        Assertions.assertEquals("text5", block.getLine(2));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> block.getLine(3));
+    }
+
+    @Test
+    void joinVertical() {
+        List<String> s1 = List.of("text1", "text2");
+        List<String> s2 = List.of("text3", "text4");
+        Block block = LineFormatter.joinVertical(Block.of(s1), Block.of(s2));
+        Assertions.assertLinesMatch(LineFormatter.joinVertical(s1, s2), block.toLines());
+        Assertions.assertEquals("text3", block.getLine(2));
+        String expected = String.join(Meta.LINES_SEPARATOR, LineFormatter.joinVertical(s1, s2)) + Meta.LINES_SEPARATOR;
+        Assertions.assertEquals(expected, block.toString());
+    }
+
+    @Test
+    void nestedJoins() {
+        List<String> cell = LineFormatter.textRectangle(4, 3, "ab", LineFormatter.Border.ALL, ' ');
+        List<String> tall = LineFormatter.textRectangle(3, 4, "c", LineFormatter.Border.VERTICAL, '.');
+        List<String> expected = cell;
+        Block block = Block.of(cell);
+        for (int i = 0; i < 50; i++) {
+            List<String> column = i % 2 == 0 ? LineFormatter.joinVertical(cell, tall) : tall;
+            expected = LineFormatter.joinHorizontal(expected, column);
+            Block columnBlock = i % 2 == 0 ? LineFormatter.joinVertical(Block.of(cell), Block.of(tall)) : Block.of(tall);
+            block = LineFormatter.joinHorizontal(block, columnBlock);
+        }
+        Assertions.assertLinesMatch(expected, block.toLines());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i), block.getLine(i));
+        }
+    }
+
+    @Test
+    void longChains() {
+        // chains of joins render without nesting as deep as they are long
+        int count = 100_000;
+        Block vertical = Block.of(List.of());
+        Block horizontal = Block.of(List.of());
+        for (int i = 0; i < count; i++) {
+            vertical = LineFormatter.joinVertical(vertical, Block.of(List.of(String.valueOf(i))));
+            horizontal = LineFormatter.joinHorizontal(horizontal, Block.of(List.of("a", "b")));
+        }
+        List<String> lines = vertical.toLines();
+        Assertions.assertEquals(count, lines.size());
+        Assertions.assertEquals("0", lines.get(0));
+        Assertions.assertEquals(String.valueOf(count - 1), lines.get(count - 1));
+        Assertions.assertEquals("12345", vertical.getLine(12345));
+        Assertions.assertLinesMatch(List.of("a".repeat(count), "b".repeat(count)), horizontal.toLines());
+        Assertions.assertEquals("b".repeat(count), horizontal.getLine(1));
+    }
+}
@@ -0,0 +1,84 @@
+package pp.muza.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CachingLineFormatterTest {
+
+    @Test
+    void textRectangle() {
+        CachingLineFormatter formatter = new CachingLineFormatter(10);
+        List<String> expected = LineFormatter.textRectangle(6, 4, "tex1 tex2", LineFormatter.Border.ALL, ' ');
+        List<String> first = formatter.textRectangle(6, 4, "tex1 tex2", LineFormatter.Border.ALL, ' ');
+        List<String> second = formatter.textRectangle(6, 4, "tex1 tex2", LineFormatter.Border.ALL, ' ');
+        Assertions.assertLinesMatch(expected, first);
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, formatter.getMissCount());
+        Assertions.assertEquals(1, formatter.getHitCount());
+
+        // every argument is a part of the key
+        Assertions.assertNotSame(first, formatter.textRectangle(6, 4, "tex1 tex2", LineFormatter.Border.NONE, ' '));
+        Assertions.assertNotSame(first, formatter.textRectangle(6, 4, "tex1 tex2", LineFormatter.Border.ALL, '.'));
+        Assertions.assertNotSame(first, formatter.textRectangle(6, 5, "tex1 tex2", LineFormatter.Border.ALL, ' '));
+        Assertions.assertEquals(4, formatter.getMissCount());
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.set(0, "x"));
+    }
+
+    @Test
+    void textWrap() {
+        CachingLineFormatter formatter = new CachingLineFormatter(10);
+        Assertions.assertLinesMatch(List.of("tex1", "tex2", "tex3"), formatter.textWrap("tex1 tex2 tex3", 5, ' '));
+        Assertions.assertLinesMatch(List.of("tex1", "tex2", "tex3"), formatter.textWrap("tex1 tex2 tex3", 5, ' '));
+        Assertions.assertEquals(1, formatter.getHitCount());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        CachingLineFormatter formatter = new CachingLineFormatter(2, 1);
+        List<String> a = formatter.textWrap("a", 5, ' ');
+        formatter.textWrap("b", 5, ' ');
+        Assertions.assertSame(a, formatter.textWrap("a", 5, ' '));
+        formatter.textWrap("c", 5, ' ');
+        Assertions.assertEquals(2, formatter.size());
+        // "b" was the least recently used one
+        Assertions.assertSame(a, formatter.textWrap("a", 5, ' '));
+        formatter.textWrap("b", 5, ' ');
+        Assertions.assertEquals(4, formatter.getMissCount());
+
+        formatter.clear();
+        Assertions.assertEquals(0, formatter.size());
+    }
+
+    @Test
+    void concurrentAccess() throws Exception {
+        CachingLineFormatter formatter = new CachingLineFormatter(50);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        String text = "text " + (i % 100);
+                        Assertions.assertLinesMatch(
+                                LineFormatter.textRectangle(8, 3, text, LineFormatter.Border.ALL, ' '),
+                                formatter.textRectangle(8, 3, text, LineFormatter.Border.ALL, ' '));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertTrue(formatter.size() <= 50);
+        Assertions.assertEquals(80000, formatter.getHitCount() + formatter.getMissCount());
+    }
+}
@@ -0,0 +1,146 @@
+package pp.muza.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentAsciiCanvasTest {
+
+    @Test
+    void drawing() {
+        ConcurrentAsciiCanvas canvas = new ConcurrentAsciiCanvas(5, 3, 2);
+        canvas.pasteLines(0, 0, List.of("Hello", "World"));
+        canvas.drawText(1, 2, StyledText.of("ab", Style.BOLD));
+        Assertions.assertEquals(List.of("Hello", "World", " ab  "), canvas.getLines());
+        Assertions.assertEquals(Style.BOLD, canvas.getStyle(1, 2));
+        Assertions.assertEquals('W', canvas.get(0, 1));
+
+        AsciiCanvas snapshot = canvas.snapshot();
+        canvas.clear('.');
+        Assertions.assertEquals("Hello", snapshot.getLines().get(0));
+        Assertions.assertEquals(".....", canvas.getLines().get(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ConcurrentAsciiCanvas(5, 3, 0));
+    }
+
+    @Test
+    void primitives() {
+        ConcurrentAsciiCanvas canvas = new ConcurrentAsciiCanvas(6, 4, 3);
+        canvas.drawBox(-1, 0, 4, 4, LineFormatter.Border.ALL);
+        canvas.fillRect(3, 1, 9, 2, '#');
+        canvas.blit(canvas, 0, 0, 3, 2, 3, 2);
+        ConcurrentAsciiCanvas source = new ConcurrentAsciiCanvas(2, 1);
+        source.drawText(0, 0, StyledText.of("xy", Style.ITALIC));
+        canvas.blit(source, 4, 0);
+        Assertions.assertEquals(List.of("--+ xy", "  |###", "  |--+", "--+  |"), canvas.getLines());
+        Assertions.assertEquals(Style.ITALIC, canvas.getStyle(5, 0));
+    }
+
+    @Test
+    void regions() throws Exception {
+        ConcurrentAsciiCanvas canvas = new ConcurrentAsciiCanvas(6, 4, 2);
+        AsciiCanvas region = canvas.region(1, 1, 4, 2);
+        region.clear('.');
+        region.drawBox(0, 0, 4, 2, LineFormatter.Border.TOP);
+        region.region(1, 1, 2, 1).drawText(0, 0, StyledText.of("ab", Style.BOLD));
+        Assertions.assertEquals(List.of("----", ".ab."), region.getLines());
+        Assertions.assertEquals(Style.BOLD, region.getStyle(1, 1));
+        Assertions.assertEquals('a', region.get(1, 1));
+        Assertions.assertEquals(Map.of(0, "----", 1, ".ab."), region.takeChangedLines());
+
+        // copying between a region and its canvas does not lock a stripe twice
+        region.blit(canvas, 0, 1, 2, 1, 2, 0);
+        canvas.blit(region, 1, 1, 2, 1, 0, 3);
+        Assertions.assertEquals(List.of("      ", " -- - ", " .ab. ", "ab    "), canvas.getLines());
+
+        // disjoint regions are drawn on in parallel
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                AsciiCanvas panel = canvas.region(t % 2 * 3, t / 2 * 2, 3, 2);
+                char c = (char) ('a' + t);
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        panel.fillRect(0, 0, 3, 2, c);
+                        panel.drawText(i % 3, i % 2, String.valueOf(Character.toUpperCase(c)));
+                    }
+                    panel.fillRect(0, 0, 3, 2, c);
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(List.of("aaabbb", "aaabbb", "cccddd", "cccddd"), canvas.getLines());
+    }
+
+    @Test
+    void stress() throws Exception {
+        int threads = 8;
+        int width = 64;
+        int shared = threads * 2;
+        ConcurrentAsciiCanvas canvas = new ConcurrentAsciiCanvas(width, shared + 1, 5);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 5000; i++) {
+                        // the even rows are filled with a single character at a time: the row of
+                        // the thread, and the last row, which all threads write with their own
+                        // character; the odd rows are written by one thread in parts
+                        String row = String.valueOf((char) ('a' + i % 26)).repeat(width);
+                        canvas.drawText(0, thread * 2, row);
+                        canvas.drawText(0, thread * 2 + 1, row.substring(thread * 8, thread * 8 + 8));
+                        canvas.drawText(0, shared, String.valueOf((char) ('A' + thread)).repeat(width));
+                    }
+                    canvas.drawText(0, thread * 2, "z".repeat(width));
+                    return null;
+                }));
+            }
+            Future<Integer> reader = executor.submit(() -> {
+                start.await();
+                int snapshots = 0;
+                while (!done.get()) {
+                    List<String> lines = canvas.getLines();
+                    for (int i = 0; i < lines.size(); i += 2) {
+                        String line = lines.get(i);
+                        Assertions.assertEquals(String.valueOf(line.charAt(0)).repeat(width), line);
+                    }
+                    snapshots++;
+                }
+                return snapshots;
+            });
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            done.set(true);
+            Assertions.assertTrue(reader.get(1, TimeUnit.MINUTES) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int t = 0; t < threads; t++) {
+            Assertions.assertEquals("z".repeat(width), canvas.getLines().get(t * 2));
+        }
+        String line = canvas.getLines().get(shared);
+        Assertions.assertTrue(line.charAt(0) >= 'A' && line.charAt(0) < 'A' + threads);
+        Assertions.assertEquals(String.valueOf(line.charAt(0)).repeat(width), line);
+    }
+}
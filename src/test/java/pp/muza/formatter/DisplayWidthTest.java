@@ -0,0 +1,67 @@
+package pp.muza.formatter;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DisplayWidthTest {
+
+    @Test
+    void codePoint() {
+        Assertions.assertEquals(1, DisplayWidth.of('a'));
+        Assertions.assertEquals(1, DisplayWidth.of(0xE9));
+        Assertions.assertEquals(2, DisplayWidth.of(0x4E2D));
+        Assertions.assertEquals(2, DisplayWidth.of(0xAC00));
+        Assertions.assertEquals(2, DisplayWidth.of(0xFF21));
+        Assertions.assertEquals(0, DisplayWidth.of(0x0301));
+        Assertions.assertEquals(0, DisplayWidth.of(0x200B));
+        Assertions.assertEquals(2, DisplayWidth.of(0x1F600));
+        Assertions.assertEquals(2, DisplayWidth.of(0x20000));
+        Assertions.assertEquals(1, DisplayWidth.of(0x10000));
+        Assertions.assertEquals(0, DisplayWidth.of(0xE0100));
+    }
+
+    @Test
+    void text() {
+        Assertions.assertEquals(0, DisplayWidth.of(""));
+        Assertions.assertEquals(5, DisplayWidth.of("hello"));
+        Assertions.assertEquals(4, DisplayWidth.of("\u4e2d\u6587"));
+        Assertions.assertEquals(4, DisplayWidth.of("e\u0301\uD83D\uDE00x"));
+        Assertions.assertEquals(3, DisplayWidth.of("ab\u4e2d", 1, 3));
+        // a range ending between the halves of a surrogate pair does not count the pair
+        Assertions.assertEquals(2, DisplayWidth.of("a\uD83D\uDE00", 0, 2));
+        Assertions.assertEquals(3, DisplayWidth.of("a\uD83D\uDE00", 0, 3));
+    }
+
+    @Test
+    void fit() {
+        String s = "a\u4e2d\uD83D\uDE00b";
+        Assertions.assertEquals(1, DisplayWidth.fit(s, 0, 2));
+        Assertions.assertEquals(2, DisplayWidth.fit(s, 0, 3));
+        Assertions.assertEquals(4, DisplayWidth.fit(s, 0, 5));
+        Assertions.assertEquals(5, DisplayWidth.fit(s, 0, 10));
+        Assertions.assertEquals(2, DisplayWidth.fit("e\u0301", 0, 1));
+        Assertions.assertEquals(4, DisplayWidth.fitFromEnd(s, 2));
+        Assertions.assertEquals(2, DisplayWidth.fitFromEnd(s, 3));
+        Assertions.assertEquals(0, DisplayWidth.fitFromEnd(s, 6));
+    }
+
+    @Test
+    void formatting() {
+        LineFormatter.Measure display = LineFormatter.Measure.DISPLAY;
+        Assertions.assertEquals(" \u4e2d\u6587 ", LineFormatter.centerTrim("\u4e2d\u6587", 6, ' ', display));
+        Assertions.assertEquals("\u4e2d.", LineFormatter.centerTrim("\u4e2d\u6587", 3, '.', display));
+        Assertions.assertEquals("\u4e2d\u6587..", LineFormatter.rightAlignTrim("\u4e2d\u6587", 6, '.', display));
+        Assertions.assertEquals("..\u4e2d\u6587", LineFormatter.leftAlignTrim("\u4e2d\u6587", 6, '.', display));
+        Assertions.assertEquals(".\u6587", LineFormatter.leftAlignTrim("\u4e2d\u6587", 3, '.', display));
+        Assertions.assertEquals("abc", LineFormatter.centerTrim("abc", 3, '.', display));
+
+        Assertions.assertEquals(List.of("\u4e2d\u6587", "\u4e2d\u6587"),
+                LineFormatter.textWrap("\u4e2d\u6587 \u4e2d\u6587", 6, ' ', display));
+        Assertions.assertEquals(List.of("\u4e2d\u6587 \u4e2d\u6587"),
+                LineFormatter.textWrap("\u4e2d\u6587 \u4e2d\u6587", 6, ' '));
+        Assertions.assertEquals(LineFormatter.textWrap("one two three\n\nfour", 7, ' '),
+                LineFormatter.textWrap("one two three\n\nfour", 7, ' ', display));
+    }
+}
@@ -0,0 +1,68 @@
+package pp.muza.formatter;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DoubleBufferedCanvasTest {
+
+    @Test
+    void swap() {
+        DoubleBufferedCanvas canvas = new DoubleBufferedCanvas(3, 2);
+        AsciiCanvas first = canvas.getBack();
+        first.drawText(0, 0, "abc");
+        Assertions.assertEquals(List.of("   ", "   "), canvas.getLines());
+
+        canvas.swap();
+        Assertions.assertEquals(1, canvas.getFrame());
+        Assertions.assertEquals(List.of("abc", "   "), canvas.getLines());
+        Assertions.assertNotSame(first, canvas.getBack());
+
+        canvas.getBack().drawText(0, 1, "xyz");
+        Assertions.assertEquals("abc" + Meta.LINES_SEPARATOR + "   " + Meta.LINES_SEPARATOR,
+                canvas.appendTo(new StringBuilder()).toString());
+        canvas.swap();
+        Assertions.assertSame(first, canvas.getBack());
+        Assertions.assertEquals(List.of("   ", "xyz"), canvas.getLines());
+        Assertions.assertEquals('x', (char) canvas.read(front -> front.get(0, 1)));
+    }
+
+    @Test
+    void readersNeverSeePartialFrames() throws Exception {
+        int width = 40;
+        int height = 20;
+        DoubleBufferedCanvas canvas = new DoubleBufferedCanvas(width, height);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            Future<?> drawer = executor.submit(() -> {
+                for (int frame = 0; frame < 2000; frame++) {
+                    AsciiCanvas back = canvas.getBack();
+                    back.clear((char) ('a' + frame % 26));
+                    canvas.swap();
+                }
+                done.set(true);
+            });
+            Runnable reader = () -> {
+                while (!done.get()) {
+                    String frame = canvas.toString().replace(Meta.LINES_SEPARATOR, "");
+                    Assertions.assertEquals(String.valueOf(frame.charAt(0)).repeat(width * height), frame);
+                }
+            };
+            Future<?> first = executor.submit(reader);
+            Future<?> second = executor.submit(reader);
+            drawer.get(1, TimeUnit.MINUTES);
+            first.get(1, TimeUnit.MINUTES);
+            second.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(2000, canvas.getFrame());
+    }
+}
@@ -0,0 +1,77 @@
+package pp.muza.formatter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LayoutTemplateTest {
+
+    private static final String[] TEXTS = { "", "Hello", "Hello World and the rest of the text",
+            "one\ntwo three four five six seven eight nine ten eleven twelve", "International" };
+
+    private static String join(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        lines.forEach(l -> sb.append(l).append(Meta.LINES_SEPARATOR));
+        return sb.toString();
+    }
+
+    @Test
+    void matchesTextRectangle() {
+        for (LineFormatter.Border border : LineFormatter.Border.values()) {
+            for (LineFormatter.Align align : LineFormatter.Align.values()) {
+                LayoutTemplate template = LayoutTemplate.builder(12, 5, '.')
+                        .box(0, 0, 12, 5, border, align)
+                        .build();
+                for (String text : TEXTS) {
+                    assertEquals(join(LineFormatter.textRectangle(12, 5, text, border, '.', align)),
+                            template.render(text), border + " " + align + " " + text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void boxesAndLabels() {
+        LayoutTemplate template = LayoutTemplate.builder(20, 4, ' ')
+                .label(0, 0, "Report")
+                .box(0, 1, 10, 3, LineFormatter.Border.ALL, LineFormatter.Align.CENTER_MIDDLE)
+                .box(10, 1, 10, 3, LineFormatter.Border.ALL, LineFormatter.Align.LEFT_TOP)
+                .build();
+        assertEquals(2, template.getSlotCount());
+        assertEquals(20, template.getWidth());
+        assertEquals(4, template.getHeight());
+        List<String> left = LineFormatter.textRectangle(10, 3, "abc", LineFormatter.Border.ALL, ' ');
+        List<String> right = LineFormatter.textRectangle(10, 3, "de", LineFormatter.Border.ALL, ' ',
+                LineFormatter.Align.LEFT_TOP);
+        String expected = "Report              " + Meta.LINES_SEPARATOR
+                + join(LineFormatter.joinHorizontal(left, right));
+        assertEquals(expected, template.render("abc", "de"));
+
+        char[] out = new char[template.getLength() + 2];
+        assertEquals(template.getLength() + 1, template.render(out, 1, "abc", "de"));
+        assertEquals(expected, new String(out, 1, template.getLength()));
+        // the slots without text keep the frame
+        assertEquals(expected.replace("abc", "   "), template.render(null, "de"));
+        assertEquals(expected.replace("abc", "   ").replace("de", "  "), template.render());
+    }
+
+    @Test
+    void invalid() {
+        LayoutTemplate.Builder builder = LayoutTemplate.builder(5, 3, ' ');
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.box(1, 0, 5, 3, LineFormatter.Border.NONE, LineFormatter.Align.LEFT_TOP));
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.box(0, 0, 2, 3, LineFormatter.Border.ALL, LineFormatter.Align.LEFT_TOP));
+        assertThrows(IllegalArgumentException.class, () -> LayoutTemplate.builder(0, 3, ' '));
+        LayoutTemplate template = builder.box(0, 0, 5, 3, LineFormatter.Border.ALL, LineFormatter.Align.LEFT_TOP)
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> template.render("a", "b"));
+        char[] out = new char[template.getLength()];
+        Arrays.fill(out, 'x');
+        assertThrows(IndexOutOfBoundsException.class, () -> template.render(out, 1, "a"));
+    }
+}
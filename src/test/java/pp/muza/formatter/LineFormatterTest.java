@@ -1,7 +1,13 @@
 package pp.muza.formatter;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -37,6 +43,188 @@ class LineFormatterTest {
         Assertions.assertLinesMatch(expected, result);
     }
 
+    @Test
+    void textWrapMatchesRegexImplementation() {
+        char[] alphabet = { 'a', 'b', 'c', ' ', ' ', '\t', '\n', '\r', '\u000B', '\f', '\u0001', '\u00e9' };
+        Random random = new Random(42);
+        for (int n = 0; n < 20000; n++) {
+            char[] chars = new char[random.nextInt(40)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String s = new String(chars);
+            int width = 1 + random.nextInt(12);
+            Assertions.assertLinesMatch(regexTextWrap(s, width, '_'), LineFormatter.textWrap(s, width, '_'),
+                    "width " + width + ", text " + s.replace("\n", "\\n").replace("\r", "\\r"));
+        }
+    }
+
+    @Test
+    void textWrapStream() throws IOException {
+        char[] alphabet = { 'a', 'b', ' ', '\t', '\n', '\n', '\r', '\f' };
+        Random random = new Random(7);
+        for (int n = 0; n < 5000; n++) {
+            char[] chars = new char[random.nextInt(30)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String s = new String(chars);
+            int width = 1 + random.nextInt(8);
+            List<String> expected = LineFormatter.textWrap(s, width, ' ');
+
+            List<String> result = new ArrayList<>();
+            new TextWrapIterator(new StringReader(s), width, ' ', 3).forEachRemaining(result::add);
+            Assertions.assertLinesMatch(expected, result);
+
+            Assertions.assertLinesMatch(expected,
+                    LineFormatter.textWrapStream(new StringBuilder(s), width, ' ').collect(Collectors.toList()));
+
+            result = new ArrayList<>();
+            LineFormatter.textWrap(new StringReader(s), width, ' ', result::add);
+            Assertions.assertLinesMatch(expected, result);
+        }
+    }
+
+    @Test
+    void textWrapStreamIsLazy() {
+        // an endless text, only the consumed part of it is ever read
+        Reader reader = new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                for (int i = 0; i < len; i++) {
+                    cbuf[off + i] = "word \n".charAt(i % 6);
+                }
+                return len;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        List<String> expected = List.of("word", "word", "word");
+        Assertions.assertLinesMatch(expected,
+                LineFormatter.textWrapStream(reader, 10, ' ').limit(3).collect(Collectors.toList()));
+    }
+
+    @Test
+    void textWrapParallel() {
+        char[] alphabet = { 'a', 'b', ' ', ' ', '\n', '\r' };
+        Random random = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int n = 0; n < 2000; n++) {
+                char[] chars = new char[random.nextInt(200)];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = alphabet[random.nextInt(alphabet.length)];
+                }
+                String s = new String(chars);
+                int width = 1 + random.nextInt(8);
+                Assertions.assertLinesMatch(LineFormatter.textWrap(s, width, ' '),
+                        LineFormatter.textWrapParallel(s, width, ' ', pool, 1 + random.nextInt(16)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        String s = "tex1 tex2 tex3\ntex4\n\n";
+        Assertions.assertLinesMatch(LineFormatter.textWrap(s, 10, ' '), LineFormatter.textWrapParallel(s, 10, ' '));
+    }
+
+    @Test
+    void textWrapOptimal() {
+        String s = "aaa bb cc ddddd";
+        Assertions.assertLinesMatch(List.of("aaa bb", "cc", "ddddd"), LineFormatter.textWrap(s, 7, ' '));
+        Assertions.assertLinesMatch(List.of("aaa", "bb cc", "ddddd"), LineFormatter.textWrap(s, 7, ' ',
+                LineFormatter.Wrap.OPTIMAL, LineFormatter.Overflow.KEEP));
+
+        s = "x abcdefghij\n\ny";
+        Assertions.assertLinesMatch(List.of("x", "abcdefghij", "", "y"), LineFormatter.textWrap(s, 5, ' ',
+                LineFormatter.Wrap.OPTIMAL, LineFormatter.Overflow.KEEP));
+        Assertions.assertLinesMatch(List.of("x", "abcd", "efgh", "ij", "", "y"), LineFormatter.textWrap(s, 5, ' ',
+                LineFormatter.Wrap.GREEDY, LineFormatter.Overflow.SPLIT));
+        Assertions.assertLinesMatch(List.of("x", "abc-", "def-", "ghij", "", "y"),
+                LineFormatter.textWrap(s, 5, ' ', LineFormatter.Wrap.OPTIMAL, LineFormatter.Overflow.HYPHENATE));
+    }
+
+    @Test
+    void textWrapKeepsSurrogatePairs() {
+        // a piece of one char takes the whole pair, longer than the line
+        String s = "x\uD83D\uDE00y";
+        Assertions.assertLinesMatch(List.of("x", "\uD83D\uDE00", "y"), LineFormatter.textWrap(s, 1, ' ',
+                LineFormatter.Wrap.GREEDY, LineFormatter.Overflow.SPLIT));
+        Assertions.assertLinesMatch(List.of("x", "\uD83D\uDE00", "y"), LineFormatter.textWrap(s, 1, ' ',
+                LineFormatter.Wrap.OPTIMAL, LineFormatter.Overflow.SPLIT));
+        Assertions.assertLinesMatch(List.of("a-", "\uD83D\uDE00-", "b"), LineFormatter.textWrap("a\uD83D\uDE00b", 3,
+                ' ', LineFormatter.Wrap.GREEDY, LineFormatter.Overflow.HYPHENATE));
+        Assertions.assertLinesMatch(List.of("ab", "\uD83D\uDE00", "c"), LineFormatter.textWrap("ab\uD83D\uDE00c", 3,
+                ' ', LineFormatter.Wrap.GREEDY, LineFormatter.Overflow.SPLIT));
+    }
+
+    @Test
+    void textWrapOptimalIsNoWorseThanGreedy() {
+        char[] alphabet = { 'a', 'b', 'c', 'd', ' ', ' ', '\t', '\n', '\r' };
+        Random random = new Random(11);
+        for (int n = 0; n < 5000; n++) {
+            char[] chars = new char[random.nextInt(60)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String s = new String(chars);
+            int width = 1 + random.nextInt(12);
+            List<String> greedy = LineFormatter.textWrap(s, width, '_');
+            Assertions.assertLinesMatch(greedy,
+                    LineFormatter.textWrap(s, width, '_', LineFormatter.Wrap.GREEDY, LineFormatter.Overflow.KEEP));
+
+            for (LineFormatter.Overflow overflow : LineFormatter.Overflow.values()) {
+                List<String> optimal = LineFormatter.textWrap(s, width, '_', LineFormatter.Wrap.OPTIMAL, overflow);
+                String words = String.join("_", greedy).replace("_", "");
+                Assertions.assertEquals(words, String.join("_", optimal).replace("_", "").replace("-", ""));
+                for (String line : optimal) {
+                    Assertions.assertTrue(line.length() < width || line.indexOf('_') < 0, line);
+                    Assertions.assertTrue(
+                            overflow == LineFormatter.Overflow.KEEP || line.length() <= Math.max(1, width - 1), line);
+                }
+                if (overflow == LineFormatter.Overflow.KEEP && s.indexOf('\n') < 0) {
+                    Assertions.assertTrue(raggedness(optimal, width) <= raggedness(greedy, width), s);
+                }
+            }
+        }
+    }
+
+    // the sum of the squared free space of the lines but the last one
+    private static long raggedness(List<String> lines, int width) {
+        long result = 0;
+        for (int i = 0; i + 1 < lines.size(); i++) {
+            if (lines.get(i).length() < width) {
+                long slack = width - 1 - lines.get(i).length();
+                result += slack * slack;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The original regex-based implementation of {@link LineFormatter#textWrap}.
+     */
+    private static List<String> regexTextWrap(String text, int width, char space) {
+        List<String> result = new ArrayList<>();
+        for (String s1 : text.split(Meta.LINE_DELIMITER_REGEX)) {
+            String[] words = s1.trim().split(Meta.WORDS_DELIMITER);
+            StringBuilder line = new StringBuilder();
+            for (String word : words) {
+                if (line.length() == 0) {
+                    line = new StringBuilder(word);
+                } else if (1 + word.length() + line.length() >= width) {
+                    result.add(line.toString());
+                    line = new StringBuilder(word);
+                } else {
+                    line.append(space).append(word);
+                }
+            }
+            result.add(line.toString());
+        }
+        return result;
+    }
+
     @Test
     void centerTrim() {
         String s = "tex1";
@@ -70,6 +258,31 @@ class LineFormatterTest {
         Assertions.assertEquals(expected, LineFormatter.leftAlignTrim(s, 3, ' '));
     }
 
+    @Test
+    void formatIntoBuffers() {
+        StringBuilder sb = new StringBuilder("[");
+        LineFormatter.centerTrim("tex1", 6, '.', sb);
+        LineFormatter.rightAlignTrim("text", 6, '.', sb);
+        LineFormatter.leftAlignTrim("text", 3, '.', sb);
+        LineFormatter.horizontalLine(4, LineFormatter.Border.ALL, sb);
+        Assertions.assertEquals("[.tex1.text..ext+--+", sb.toString());
+
+        char[] chars = new char[22];
+        int offset = LineFormatter.centerTrim("tex1", 6, '.', chars, 1);
+        offset = LineFormatter.rightAlignTrim("text", 6, '.', chars, offset);
+        offset = LineFormatter.leftAlignTrim("text", 5, '.', chars, offset);
+        offset = LineFormatter.horizontalLine(4, LineFormatter.Border.ALL, chars, offset);
+        Assertions.assertEquals(22, offset);
+        Assertions.assertEquals(".tex1.text...text+--+", new String(chars, 1, 21));
+        Assertions.assertThrows(IndexOutOfBoundsException.class,
+                () -> LineFormatter.centerTrim("tex1", 6, '.', chars, 17));
+
+        List<String> rectangle = LineFormatter.textRectangle(6, 4, "tex1 tex2", LineFormatter.Border.ALL, ' ');
+        String expected = String.join(Meta.LINES_SEPARATOR, rectangle) + Meta.LINES_SEPARATOR;
+        Assertions.assertEquals(expected, LineFormatter
+                .textRectangle(6, 4, "tex1 tex2", LineFormatter.Border.ALL, ' ', new StringBuilder()).toString());
+    }
+
     @Test
     void printBox() {
         String s = "tex1 tex2";
@@ -230,6 +443,53 @@ class LineFormatterTest {
         Assertions.assertLinesMatch(expected, (LineFormatter.resize(s, 6, 3, LineFormatter.Align.LEFT_BOTTOM, '.')));
     }
 
+    @Test
+    void justify() {
+        Assertions.assertEquals("a...b...c", LineFormatter.justify("a.b.c", 9, '.'));
+        Assertions.assertEquals("a...b..c", LineFormatter.justify("a.b.c", 8, '.'));
+        Assertions.assertEquals("..ab...cd", LineFormatter.justify("..ab.cd", 9, '.'));
+        Assertions.assertEquals("abc..", LineFormatter.justify("abc", 5, '.'));
+        Assertions.assertEquals("a.b", LineFormatter.justify("a.b.c", 3, '.'));
+        Assertions.assertEquals("a  b c", LineFormatter.justify("a b c", 6, ' '));
+    }
+
+    @Test
+    void fitAligned() {
+        List<String> s = List.of("a b", "c");
+        Assertions.assertLinesMatch(List.of("     ", "a   b", "c    ", "     "),
+                LineFormatter.resize(s, 5, 4, LineFormatter.Align.JUSTIFY_MIDDLE, ' '));
+        Assertions.assertLinesMatch(List.of("     ", " a b ", "  c  "),
+                LineFormatter.resize(s, 5, 3, LineFormatter.Align.CENTER_BOTTOM, ' '));
+        Assertions.assertLinesMatch(List.of("  a b", "    c", "     "),
+                LineFormatter.resize(s, 5, 3, LineFormatter.Align.RIGHT_MIDDLE, ' '));
+
+        // the corner modes are a special case of the general alignment
+        List<String> lines = List.of("text1", "", "tx", "text text");
+        for (LineFormatter.Align align : LineFormatter.Align.values()) {
+            List<String> expected = LineFormatter.resize(lines, 7, 6, align, '.');
+            List<String> result = new ArrayList<>();
+            LineFormatter.resizeAligned(7, 6, lines, result, align, '.');
+            Assertions.assertLinesMatch(expected, result, align.name());
+        }
+    }
+
+    @Test
+    void textRectangleAligned() {
+        String s = "one two three four";
+        LineFormatter.Border border = LineFormatter.Border.ALL;
+        Assertions.assertLinesMatch(LineFormatter.textRectangle(13, 5, s, border, ' '),
+                LineFormatter.textRectangle(13, 5, s, border, ' ', LineFormatter.Align.CENTER_MIDDLE));
+        Assertions.assertLinesMatch(
+                List.of("+-----------+", "|one     two|", "|three four |", "|           |", "+-----------+"),
+                LineFormatter.textRectangle(13, 5, s, border, ' ', LineFormatter.Align.JUSTIFY_TOP));
+        Assertions.assertLinesMatch(
+                List.of("+-----------+", "|           |", "|    one two|", "| three four|", "+-----------+"),
+                LineFormatter.textRectangle(13, 5, s, border, ' ', LineFormatter.Align.RIGHT_BOTTOM));
+        // the last lines of a text higher than the rectangle are shown
+        Assertions.assertLinesMatch(List.of("+-----------+", "|three four |", "+-----------+"),
+                LineFormatter.textRectangle(13, 3, s, border, ' ', LineFormatter.Align.LEFT_BOTTOM));
+    }
+
     @Test
     void joinHorizontal() {
         List<String> s1 = List.of("text1\ntext2\n".split("\n"));
@@ -254,4 +514,77 @@ class LineFormatterTest {
         String expected = "text1" + Meta.LINES_SEPARATOR + "text2";
         Assertions.assertEquals(expected, (LineFormatter.linesToString(s)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void fittingLinesAreReused() {
+        String line = "exactly";
+        Assertions.assertSame(line, LineFormatter.rightAlignTrim(line, 7, ' '));
+        Assertions.assertSame(line, LineFormatter.leftAlignTrim(line, 7, ' '));
+        Assertions.assertSame(line, LineFormatter.centerTrim(line, 7, ' '));
+
+        List<String> lines = List.of("abcde", "ab", "fghij");
+        for (LineFormatter.Align align : LineFormatter.Align.values()) {
+            List<String> resized = LineFormatter.resize(lines, 5, 3, align, ' ');
+            Assertions.assertSame(lines.get(0), resized.get(0), align.name());
+            Assertions.assertSame(lines.get(2), resized.get(2), align.name());
+        }
+
+        List<String> rectangle = LineFormatter.textRectangle(5, 5, lines, LineFormatter.Border.HORIZONTAL, ' ',
+                LineFormatter.Align.LEFT_TOP);
+        Assertions.assertEquals(List.of("-----", "abcde", "ab   ", "fghij", "-----"), rectangle);
+        Assertions.assertSame(lines.get(0), rectangle.get(1));
+        Assertions.assertSame(lines.get(2), rectangle.get(3));
+    }
+
+    @Test
+    void textRectangleOfLines() {
+        String text = "The quick brown fox jumps over the lazy dog\n\nand runs away";
+        for (LineFormatter.Border border : LineFormatter.Border.values()) {
+            for (LineFormatter.Align align : LineFormatter.Align.values()) {
+                int textWidth = 12 - (border.left ? 1 : 0) - (border.right ? 1 : 0);
+                List<String> lines = LineFormatter.textWrap(text, textWidth, ' ');
+                Assertions.assertEquals(LineFormatter.textRectangle(12, 7, text, border, ' ', align),
+                        LineFormatter.textRectangle(12, 7, lines, border, ' ', align), border + " " + align);
+            }
+        }
+        // the lines are not wrapped again
+        Assertions.assertEquals(List.of("|ab cd ef|", "|        |"), LineFormatter.textRectangle(10, 2,
+                List.of("ab cd ef gh"), LineFormatter.Border.VERTICAL, ' ', LineFormatter.Align.LEFT_TOP));
+    }
+
+    @Test
+    void batchTrims() {
+        List<String> cells = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            cells.add("abcdefghijklmnopqrstuvwxyz".substring(0, random.nextInt(20)));
+        }
+        for (int width = 1; width < 16; width += 7) {
+            char[] center = LineFormatter.centerTrimAll(cells, width, '.');
+            char[] right = LineFormatter.rightAlignTrimAll(cells, width, '.');
+            char[] left = LineFormatter.leftAlignTrimAll(cells, width, '.');
+            Assertions.assertEquals(cells.size() * width, center.length);
+            for (int i = 0; i < cells.size(); i++) {
+                String cell = cells.get(i);
+                Assertions.assertEquals(LineFormatter.centerTrim(cell, width, '.'),
+                        new String(center, i * width, width));
+                Assertions.assertEquals(LineFormatter.rightAlignTrim(cell, width, '.'),
+                        new String(right, i * width, width));
+                Assertions.assertEquals(LineFormatter.leftAlignTrim(cell, width, '.'),
+                        new String(left, i * width, width));
+            }
+        }
+
+        List<CharSequence> column = new ArrayList<>();
+        column.add(new StringBuilder("ab"));
+        column.add(null);
+        column.add(StyledText.of("abcdef"));
+        char[] out = new char[17];
+        Assertions.assertEquals(16, LineFormatter.leftAlignTrimAll(column, 5, ' ', out, 1));
+        Assertions.assertEquals("   ab     bcdef", new String(out, 1, 15));
+        Assertions.assertThrows(IndexOutOfBoundsException.class,
+                () -> LineFormatter.centerTrimAll(column, 5, ' ', out, 3));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> LineFormatter.rightAlignTrimAll(column, -1, ' '));
+    }
+}
@@ -0,0 +1,63 @@
+package pp.muza.formatter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class OffHeapAsciiCanvasTest {
+
+    private static void draw(OffHeapAsciiCanvas canvas, AsciiCanvas expected) {
+        canvas.clear('.');
+        canvas.pasteLines(1, 1, List.of("Hello", "World", "clipped"));
+        canvas.drawText(3, 0, "\u00e9t\u00e9");
+        expected.clear('.');
+        expected.pasteLines(1, 1, List.of("Hello", "World", "clipped"));
+        expected.drawText(3, 0, "\u00e9t\u00e9");
+    }
+
+    @Test
+    void direct() throws IOException {
+        OffHeapAsciiCanvas canvas = OffHeapAsciiCanvas.allocate(5, 3);
+        AsciiCanvas expected = new AsciiCanvas(5, 3);
+        draw(canvas, expected);
+        Assertions.assertEquals('\u00e9', canvas.get(3, 0));
+        Assertions.assertEquals("Hell", canvas.getLine(1).substring(1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> canvas.get(5, 0));
+        canvas.drawText(0, 2, "\u4e2d");
+        expected.drawText(0, 2, "?");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        canvas.writeTo(Channels.newChannel(out));
+        Assertions.assertEquals(expected.toString(), out.toString(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void mapped() throws IOException {
+        Path file = Files.createTempFile("canvas", ".txt");
+        Path copy = Files.createTempFile("canvas", ".copy");
+        try {
+            AsciiCanvas expected = new AsciiCanvas(6, 4);
+            try (OffHeapAsciiCanvas canvas = OffHeapAsciiCanvas.map(file, 6, 4)) {
+                draw(canvas, expected);
+                try (FileChannel out = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                    canvas.writeTo(out);
+                }
+                canvas.force();
+            }
+            Assertions.assertEquals(expected.toString(), Files.readString(file, StandardCharsets.ISO_8859_1));
+            Assertions.assertEquals(expected.toString(), Files.readString(copy, StandardCharsets.ISO_8859_1));
+        } finally {
+            Files.delete(file);
+            Files.delete(copy);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package pp.muza.formatter;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PadTableTest {
+
+    @Test
+    void run() {
+        Assertions.assertEquals("", PadTable.run('-', 0));
+        Assertions.assertEquals("---", PadTable.run('-', 3));
+        Assertions.assertSame(PadTable.run('-', 3), PadTable.run('-', 3));
+        Assertions.assertEquals("...", PadTable.run('.', 3));
+        Assertions.assertEquals(PadTable.MAX_WIDTH + 1, PadTable.run(' ', PadTable.MAX_WIDTH + 1).length());
+    }
+
+    @Test
+    void append() {
+        StringBuilder sb = new StringBuilder();
+        PadTable.append(sb, '.', 2 * PadTable.MAX_WIDTH + 3);
+        Assertions.assertEquals(".".repeat(2 * PadTable.MAX_WIDTH + 3), sb.toString());
+        PadTable.append(sb, '.', -1);
+        Assertions.assertEquals(2 * PadTable.MAX_WIDTH + 3, sb.length());
+    }
+
+    @Test
+    void formattingReusesRuns() {
+        Assertions.assertSame(PadTable.run(' ', 6), LineFormatter.centerTrim("", 6, ' '));
+        Assertions.assertSame(PadTable.run('-', 6), LineFormatter.horizontalLine(6, LineFormatter.Border.NONE));
+        Assertions.assertSame(PadTable.run('.', 4),
+                LineFormatter.resize(List.of(), 4, 1, LineFormatter.Align.LEFT_TOP, '.').get(0));
+    }
+}
@@ -0,0 +1,84 @@
+package pp.muza.formatter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StyledTextTest {
+
+    private static final int RED = Style.fg(Style.RED);
+    private static final int BOLD = Style.BOLD;
+
+    @Test
+    void ansi() {
+        Assertions.assertEquals("\u001B[0;1m", Style.appendAnsi(BOLD, new StringBuilder()).toString());
+        Assertions.assertEquals("\u001B[0;4;91;48;5;200m",
+                Style.appendAnsi(Style.UNDERLINE | Style.fg(9) | Style.bg(200), new StringBuilder()).toString());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Style.fg(256));
+
+        StyledText text = StyledText.builder().append("ab", RED).append("c", RED).append("d", Style.NONE).build();
+        Assertions.assertEquals("abcd", text.toString());
+        Assertions.assertEquals("\u001B[0;31mabc\u001B[0md", text.toAnsiString());
+        Assertions.assertEquals("abc", StyledText.of("abc").toAnsiString());
+        Assertions.assertEquals("\u001B[0;1mx\u001B[0m", StyledText.of("x", BOLD).toAnsiString());
+    }
+
+    @Test
+    void subSequence() {
+        StyledText text = StyledText.builder().append("ab", RED).append("cd", BOLD).append("ef", RED).build();
+        Assertions.assertEquals(RED, text.getStyle(1));
+        Assertions.assertEquals(BOLD, text.getStyle(2));
+        Assertions.assertEquals(RED, text.getStyle(5));
+        Assertions.assertEquals(StyledText.builder().append("b", RED).append("cd", BOLD).append("e", RED).build(),
+                text.subSequence(1, 5));
+        Assertions.assertEquals(StyledText.of("d", BOLD), text.subSequence(3, 4));
+        Assertions.assertEquals(StyledText.of(""), text.subSequence(3, 3));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> text.subSequence(3, 7));
+    }
+
+    @Test
+    void formatting() {
+        StyledText text = StyledText.builder().append("one", RED).append(" two  ", BOLD).append("three", RED).build();
+        List<StyledText> lines = LineFormatter.textWrap(text, 8, '_');
+        Assertions.assertEquals(List.of("one_two", "three"), List.of(lines.get(0).toString(), lines.get(1).toString()));
+        Assertions.assertEquals(StyledText.builder().append("one", RED).append("_two", BOLD).build(), lines.get(0));
+        Assertions.assertEquals(LineFormatter.textWrap(text.toString(), 5, '_'),
+                LineFormatter.textWrap(text, 5, '_').stream().map(StyledText::toString)
+                        .collect(Collectors.toList()));
+
+        StyledText red = StyledText.of("ab", RED);
+        Assertions.assertEquals(StyledText.builder().append(".", Style.NONE).append(red).append("..", Style.NONE).build(),
+                LineFormatter.centerTrim(red, 5, '.'));
+        Assertions.assertEquals("ab...", LineFormatter.rightAlignTrim(red, 5, '.').toString());
+        Assertions.assertEquals("...ab", LineFormatter.leftAlignTrim(red, 5, '.').toString());
+        Assertions.assertEquals(StyledText.of("b", RED), LineFormatter.leftAlignTrim(red, 1, '.'));
+        Assertions.assertSame(red, LineFormatter.centerTrim(red, 2, '.'));
+    }
+
+    @Test
+    void canvas() {
+        AsciiCanvas canvas = new AsciiCanvas(5, 2);
+        canvas.takeChangedLines();
+        canvas.drawText(1, 0, StyledText.builder().append("ab", RED).append("c", BOLD).build());
+        Assertions.assertEquals(" abc ", canvas.getLines().get(0));
+        Assertions.assertEquals(RED, canvas.getStyle(2, 0));
+        Assertions.assertEquals(" \u001B[0;31mab\u001B[0;1mc\u001B[0m " + Meta.LINES_SEPARATOR + "     "
+                + Meta.LINES_SEPARATOR, canvas.appendAnsi(new StringBuilder()).toString());
+
+        canvas.drawStyledText(0, 1, StyledText.of("d", BOLD));
+        Assertions.assertEquals(BOLD, canvas.getStyle(0, 1));
+        canvas.drawText(0, 1, " ");
+
+        // a change of the style alone is a change
+        Assertions.assertEquals(Map.of(0, " abc "), canvas.takeChangedLines());
+        canvas.drawText(1, 0, "ab");
+        Assertions.assertEquals(Style.NONE, canvas.getStyle(2, 0));
+        Assertions.assertEquals("\u001B[1;1H ab\u001B[0;1mc\u001B[0m ",
+                canvas.takeChangesAnsi(new StringBuilder()).toString());
+        canvas.clear();
+        Assertions.assertEquals(Style.NONE, canvas.getStyle(3, 0));
+    }
+}
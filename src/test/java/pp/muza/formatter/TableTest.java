@@ -0,0 +1,90 @@
+package pp.muza.formatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TableTest {
+
+    @Test
+    void render() {
+        Table table = new Table(LineFormatter.Border.ALL, ' ')
+                .addRow("one three", "two")
+                .addRow("four", "", "x")
+                .setMaxColumnWidth(5);
+        Assertions.assertArrayEquals(new int[] { 5, 3, 1 }, table.getColumnWidths());
+        List<String> expected = List.of(
+                "+-----+---+-+",
+                "|one  |two| |",
+                "|three|   | |",
+                "|four |   |x|",
+                "+-----+---+-+");
+        Assertions.assertLinesMatch(expected, table.toLines());
+        Assertions.assertEquals(String.join(Meta.LINES_SEPARATOR, expected) + Meta.LINES_SEPARATOR,
+                table.toString());
+    }
+
+    @Test
+    void renderWithoutBorder() {
+        Table table = new Table(LineFormatter.Border.NONE, '.')
+                .addRow("a  b", "c")
+                .addRow("dddddd", "e")
+                .setColumnWidths(4, 2)
+                .setRowSeparators(true);
+        List<String> expected = List.of(
+                "a.b.|c.",
+                "----+--",
+                "dddd|e.");
+        Assertions.assertLinesMatch(expected, table.toLines());
+    }
+
+    @Test
+    void renderStreamedRows() {
+        Table table = new Table(LineFormatter.Border.VERTICAL, ' ');
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> table.render(List.of(List.of("a")).iterator(), new StringBuilder()));
+        table.setColumnWidths(3);
+        String result = table.render(List.of(List.of("a"), List.of("b c d")).iterator(), new StringBuilder())
+                .toString();
+        Assertions.assertEquals(String.join(Meta.LINES_SEPARATOR, "|a  |", "|b c|", "|d  |", ""), result);
+    }
+
+    @Test
+    void renderToCanvas() {
+        AsciiCanvas canvas = new AsciiCanvas(8, 4);
+        canvas.clear('.');
+        new Table(LineFormatter.Border.ALL, ' ').addRow("ab", "c").render(canvas, 1, 1);
+        Assertions.assertLinesMatch(List.of("........", ".+--+-+.", ".|ab|c|.", ".+--+-+."), canvas.getLines());
+    }
+
+    @Test
+    void cellsMatchTextWrap() {
+        char[] alphabet = { 'a', 'b', ' ', ' ', '\t', '\n', '\r', '\f' };
+        Random random = new Random(3);
+        WrappedLines wrapped = new WrappedLines();
+        for (int n = 0; n < 5000; n++) {
+            char[] chars = new char[random.nextInt(30)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String s = new String(chars);
+            int width = 1 + random.nextInt(8);
+            wrapped.wrap(s, width);
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < wrapped.size(); i++) {
+                StringBuilder sb = new StringBuilder();
+                Assertions.assertEquals(wrapped.length(i), wrapped.append(i, '_', Integer.MAX_VALUE, sb));
+                result.add(sb.toString());
+            }
+            Assertions.assertLinesMatch(LineFormatter.textWrap(s, width, '_'), result);
+
+            int natural = LineFormatter.textWrap(s, Integer.MAX_VALUE, '_').stream().mapToInt(String::length)
+                    .max().orElse(0);
+            Assertions.assertEquals(natural, WrappedLines.naturalWidth(s), Arrays.toString(chars));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package pp.muza.formatter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TableWriterTest {
+
+    @Test
+    void fixedWidths() throws IOException {
+        StringWriter out = new StringWriter();
+        try (TableWriter writer = new TableWriter(out, LineFormatter.Border.ALL, ' ')) {
+            writer.setColumnWidths(3, 2).setRowSeparators(true);
+            writer.writeRow("a b c", "d");
+            Assertions.assertThrows(IllegalStateException.class, () -> writer.setColumnWidths(1));
+            writer.writeRow(List.of("e"));
+        }
+        List<String> expected = List.of(
+                "+---+--+",
+                "|a b|d |",
+                "|c  |  |",
+                "+---+--+",
+                "|e  |  |",
+                "+---+--+");
+        Assertions.assertEquals(String.join(Meta.LINES_SEPARATOR, expected) + Meta.LINES_SEPARATOR,
+                out.toString());
+    }
+
+    @Test
+    void sampledWidths() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TableWriter writer = new TableWriter(out, StandardCharsets.UTF_8, LineFormatter.Border.VERTICAL, '.')) {
+            writer.setSampleSize(2);
+            writer.writeRows(List.of(List.of("ab", "\u00e9"), List.of("c", "d"), List.of("efg", "h", "i")).iterator());
+        }
+        List<String> expected = List.of("|ab|\u00e9|", "|c.|d|", "|ef|h|");
+        Assertions.assertEquals(String.join(Meta.LINES_SEPARATOR, expected) + Meta.LINES_SEPARATOR,
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sameAsTable() throws IOException {
+        Table table = new Table(LineFormatter.Border.ALL, ' ').setMaxColumnWidth(6);
+        StringWriter out = new StringWriter();
+        try (TableWriter writer = new TableWriter(out, LineFormatter.Border.ALL, ' ')) {
+            writer.setMaxColumnWidth(6);
+            for (int i = 0; i < 1000; i++) {
+                // long enough to spill over the internal buffer
+                String[] row = { "row " + i, "some longer text " + i, "" };
+                table.addRow(row);
+                writer.writeRow(row);
+            }
+        }
+        Assertions.assertEquals(table.toString(), out.toString());
+    }
+}